@@ -0,0 +1,19 @@
+package com.jit.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> all = new ArrayList<>(Arrays.asList(args));
+        if (!all.contains("-rf"))
+            all.addAll(List.of("-rf", "json"));
+        if (!all.contains("-rff"))
+            all.addAll(List.of("-rff", "jmh-result.json"));
+        org.openjdk.jmh.Main.main(all.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,50 @@
+package com.jit.bench;
+
+import com.jit.commands.CheckoutCommand;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BranchCheckoutBenchmark {
+    @Param({ "5000" })
+    public int files;
+
+    @Param({ "1", "10", "100" })
+    public int changedPercent;
+
+    private Repository repo;
+    private PrintStream stdout;
+    private boolean onMain = true;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RepoGenerator gen = new RepoGenerator(files, 3, 1024, 1);
+        repo = gen.generate("jit-bench-switch");
+        RefStore refs = new RefStore(repo);
+        refs.writeRef("refs/heads/other", refs.resolveHeadCommit(), "branch: Created from HEAD");
+        gen.commit(repo, gen.modify(repo, Math.max(1, files * changedPercent / 100)), "diverge");
+        stdout = Fixtures.silenceStdout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public void checkout() {
+        new CheckoutCommand().run(repo, new String[] { onMain ? "other" : "main" });
+        onMain = !onMain;
+    }
+}
@@ -0,0 +1,58 @@
+package com.jit.bench;
+
+import com.jit.index.CheckoutWriter;
+import com.jit.index.Index;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CheckoutBenchmark {
+    @Param({ "1", "4", "8" })
+    public int jobs;
+
+    @Param({ "2000" })
+    public int files;
+
+    @Param({ "4096" })
+    public int fileSize;
+
+    private Repository repo;
+    private CheckoutWriter writer;
+    private Map<String, ObjectId> tree;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = Fixtures.newRepo("jit-bench-checkout");
+        ObjectStore store = new ObjectStore(repo);
+        tree = new LinkedHashMap<>();
+        for (int i = 0; i < files; i++) {
+            byte[] payload = Fixtures.text(fileSize, i);
+            Fixtures.stamp(payload, i);
+            tree.put("src/d" + (i % 50) + "/f" + i + ".txt", store.writeObject("blob", payload));
+        }
+        writer = new CheckoutWriter(repo, store, jobs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public List<Index.Entry> checkout() {
+        return writer.write(tree);
+    }
+}
@@ -0,0 +1,50 @@
+package com.jit.bench;
+
+import com.jit.commands.CommitCommand;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CommitBenchmark {
+    @Param({ "5000" })
+    public int files;
+
+    @Param({ "1", "4" })
+    public int depth;
+
+    private RepoGenerator gen;
+    private Repository repo;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        gen = new RepoGenerator(files, depth, 256, 1);
+        repo = gen.generate("jit-bench-commit");
+        stdout = Fixtures.silenceStdout();
+    }
+
+    @Setup(Level.Invocation)
+    public void touch() throws IOException {
+        gen.stage(repo, gen.modify(repo, 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public void commitOneChange() {
+        new CommitCommand().run(repo, new String[] { "-m", "bench" });
+    }
+}
@@ -0,0 +1,69 @@
+package com.jit.bench;
+
+import com.jit.objects.ObjectId;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public final class Fixtures {
+    private static final String[] WORDS = { "public", "static", "final", "return", "void", "int", "long", "String",
+            "new", "if", "else", "for", "while", "class", "private", "import", "package", "throw", "this", "null" };
+
+    private Fixtures() {
+    }
+
+    public static Repository newRepo(String prefix) throws IOException {
+        Path dir = Files.createTempDirectory(prefix);
+        Repository repo = new Repository(dir);
+        repo.init();
+        return repo;
+    }
+
+    public static byte[] text(int size, long seed) {
+        Random rnd = new Random(seed);
+        StringBuilder sb = new StringBuilder(size + 64);
+        while (sb.length() < size) {
+            int indent = rnd.nextInt(4);
+            for (int i = 0; i < indent; i++)
+                sb.append("    ");
+            int words = 3 + rnd.nextInt(8);
+            for (int i = 0; i < words; i++)
+                sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(i == words - 1 ? ";\n" : " ");
+        }
+        sb.setLength(size);
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static void stamp(byte[] payload, long counter) {
+        for (int i = 0; i < 8 && i < payload.length; i++)
+            payload[i] = (byte) ('a' + ((counter >>> (i * 4)) & 0xf));
+    }
+
+    public static Path loosePath(Repository repo, ObjectId id) {
+        String hex = id.name();
+        return repo.objectsDir().resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+    }
+
+    public static PrintStream silenceStdout() {
+        PrintStream old = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return old;
+    }
+
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root))
+            return;
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.jit.bench;
+
+import com.jit.objects.HashAlgorithm;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class HashBenchmark {
+    @Param({ "64", "1024", "16384", "262144" })
+    public int payloadSize;
+
+    private Repository repo;
+    private ObjectStore store;
+    private byte[] header;
+    private byte[] payload;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = Fixtures.newRepo("jit-bench-hash");
+        repo.config().set("core.compression", "1");
+        store = new ObjectStore(repo);
+        payload = Fixtures.text(payloadSize, 42);
+        header = ("blob " + payloadSize + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public byte[] hashNewDigest() throws NoSuchAlgorithmException {
+        byte[] all = new byte[header.length + payload.length];
+        System.arraycopy(header, 0, all, 0, header.length);
+        System.arraycopy(payload, 0, all, header.length, payload.length);
+        return MessageDigest.getInstance("SHA-1").digest(all);
+    }
+
+    @Benchmark
+    public byte[] hashCachedDigest() {
+        return HashAlgorithm.SHA1.hash(header, payload);
+    }
+
+    @Benchmark
+    public byte[] hashSha256() {
+        return HashAlgorithm.SHA256.hash(header, payload);
+    }
+
+    @Benchmark
+    public ObjectId write() {
+        Fixtures.stamp(payload, counter++);
+        return store.writeObject("blob", payload);
+    }
+}
@@ -0,0 +1,55 @@
+package com.jit.bench;
+
+import com.jit.index.Index;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+    @Param({ "1000", "10000" })
+    public int files;
+
+    private Repository repo;
+    private ObjectStore store;
+    private Index loaded;
+    private String probe;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RepoGenerator gen = new RepoGenerator(files, 2, 256, 1);
+        repo = gen.generate("jit-bench-index");
+        probe = gen.path(files / 2);
+        store = new ObjectStore(repo);
+        loaded = new Index(repo, store);
+        loaded.entries();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public int load() {
+        return new Index(repo, store).entries().size();
+    }
+
+    @Benchmark
+    public Index.Entry lookup() {
+        return new Index(repo, store).get(probe);
+    }
+
+    @Benchmark
+    public void save() {
+        loaded.save();
+    }
+}
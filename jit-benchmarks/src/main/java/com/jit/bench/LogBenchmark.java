@@ -0,0 +1,61 @@
+package com.jit.bench;
+
+import com.jit.objects.CachingObjectStore;
+import com.jit.objects.CommitGraph;
+import com.jit.objects.CommitWalk;
+import com.jit.objects.ObjectId;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class LogBenchmark {
+    @Param({ "1000" })
+    public int history;
+
+    @Param({ "true", "false" })
+    public boolean commitGraph;
+
+    private Repository repo;
+    private ObjectId head;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = new RepoGenerator(50, 1, 128, history).generate("jit-bench-log");
+        head = new RefStore(repo).resolveHeadCommit();
+        if (!commitGraph)
+            Files.deleteIfExists(repo.commitGraphFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public long walkIds() {
+        CommitWalk walk = new CommitWalk(new CachingObjectStore(repo), CommitGraph.open(repo), head);
+        long n = 0;
+        while (walk.hasNext())
+            n += walk.next().time() & 1;
+        return n;
+    }
+
+    @Benchmark
+    public long walkMessages() {
+        CommitWalk walk = new CommitWalk(new CachingObjectStore(repo), CommitGraph.open(repo), head);
+        long n = 0;
+        while (walk.hasNext())
+            n += walk.next().commit().message.length();
+        return n;
+    }
+}
@@ -0,0 +1,64 @@
+package com.jit.bench;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class LooseObjectCompressionBenchmark {
+    @Param({ "0", "1", "6", "9" })
+    public int level;
+
+    @Param({ "4096", "65536" })
+    public int payloadSize;
+
+    private Repository repo;
+    private ObjectStore store;
+    private byte[] payload;
+    private long counter;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+        public long rawBytes;
+        public long diskBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rawBytes = 0;
+            diskBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = Fixtures.newRepo("jit-bench-zlib");
+        repo.config().set("core.compression", Integer.toString(level));
+        store = new ObjectStore(repo);
+        payload = Fixtures.text(payloadSize, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public ObjectId write(Sizes sizes) throws IOException {
+        Fixtures.stamp(payload, counter++);
+        ObjectId id = store.writeObject("blob", payload);
+        sizes.rawBytes += payload.length;
+        sizes.diskBytes += Files.size(Fixtures.loosePath(repo, id));
+        return id;
+    }
+}
@@ -0,0 +1,69 @@
+package com.jit.bench;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.objects.Repacker;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ObjectFilterBenchmark {
+    private static final int OBJECTS = 16384;
+    private static final int PAYLOAD = 256;
+
+    @Param({ "false", "true" })
+    public boolean filter;
+
+    private Repository repo;
+    private ObjectStore store;
+    private final List<byte[]> existing = new ArrayList<>();
+    private byte[] payload;
+    private int next;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = Fixtures.newRepo("jit-bench-filter");
+        ObjectStore writer = new ObjectStore(repo);
+        for (int i = 0; i < OBJECTS; i++) {
+            byte[] data = Fixtures.text(PAYLOAD, i);
+            Fixtures.stamp(data, i);
+            writer.writeObject("blob", data);
+            existing.add(data);
+        }
+        new Repacker(repo, writer).repack(List.of());
+        if (filter)
+            writer.writeFilter();
+        store = new ObjectStore(repo);
+        payload = Fixtures.text(PAYLOAD, -1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (filter)
+            System.out.println("\nfilter skips " + store.filterSkips() + ", false positives "
+                    + store.filterFalsePositives() + ", memory " + store.filter().memoryBytes() + " bytes");
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public ObjectId writeNew() {
+        Fixtures.stamp(payload, OBJECTS + counter++);
+        return store.writeObject("blob", payload);
+    }
+
+    @Benchmark
+    public ObjectId writeExisting() {
+        return store.writeObject("blob", existing.get(next++ % OBJECTS));
+    }
+}
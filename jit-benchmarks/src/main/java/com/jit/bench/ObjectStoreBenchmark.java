@@ -0,0 +1,72 @@
+package com.jit.bench;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.objects.Repacker;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ObjectStoreBenchmark {
+    private static final int OBJECTS = 1024;
+
+    @Param({ "1024", "65536" })
+    public int payloadSize;
+
+    private Repository loose;
+    private Repository packed;
+    private ObjectStore looseStore;
+    private ObjectStore packedStore;
+    private final List<ObjectId> ids = new ArrayList<>();
+    private byte[] payload;
+    private int next;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        loose = Fixtures.newRepo("jit-bench-loose");
+        packed = Fixtures.newRepo("jit-bench-packed");
+        looseStore = new ObjectStore(loose);
+        packedStore = new ObjectStore(packed);
+        for (int i = 0; i < OBJECTS; i++) {
+            byte[] data = Fixtures.text(payloadSize, i);
+            Fixtures.stamp(data, i);
+            ids.add(looseStore.writeObject("blob", data));
+            packedStore.writeObject("blob", data);
+        }
+        new Repacker(packed, packedStore).repack(List.of());
+        payload = Fixtures.text(payloadSize, -1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(loose.getWorkTree());
+        Fixtures.delete(packed.getWorkTree());
+    }
+
+    @Benchmark
+    public ObjectId write() {
+        Fixtures.stamp(payload, counter++);
+        return looseStore.writeObject("blob", payload);
+    }
+
+    @Benchmark
+    public ObjectStore.StoredObject readLoose() {
+        return looseStore.readObject(ids.get(next++ % OBJECTS));
+    }
+
+    @Benchmark
+    public ObjectStore.StoredObject readPacked() {
+        return packedStore.readObject(ids.get(next++ % OBJECTS));
+    }
+}
@@ -0,0 +1,65 @@
+package com.jit.bench;
+
+import com.jit.objects.ObjectId;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class RefBenchmark {
+    @Param({ "1000", "10000" })
+    public int refs;
+
+    @Param({ "true", "false" })
+    public boolean packed;
+
+    private Repository repo;
+    private RefStore store;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = Fixtures.newRepo("jit-bench-refs");
+        String value = ObjectId.fromRaw(new byte[ObjectId.RAW_LENGTH]).name() + "\n";
+        for (int i = 0; i < refs; i++)
+            Files.writeString(repo.refsHeadsDir().resolve(branch(i)), value, StandardCharsets.UTF_8);
+        store = new RefStore(repo);
+        if (packed)
+            store.packRefs();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public ObjectId resolve() {
+        next = (next + 7919) % refs;
+        return store.resolveRef("refs/heads/" + branch(next));
+    }
+
+    @Benchmark
+    public int list() {
+        return store.listRefs().size();
+    }
+
+    @Benchmark
+    public ObjectId resolveHead() {
+        return store.resolveHeadCommit();
+    }
+
+    private static String branch(int i) {
+        return "ci-" + i;
+    }
+}
@@ -0,0 +1,87 @@
+package com.jit.bench;
+
+import com.jit.commands.CommitCommand;
+import com.jit.index.Index;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RepoGenerator {
+    private static final int FANOUT = 8;
+
+    private final int files;
+    private final int depth;
+    private final int fileSize;
+    private final int history;
+    private long edits;
+
+    public RepoGenerator(int files, int depth, int fileSize, int history) {
+        this.files = files;
+        this.depth = depth;
+        this.fileSize = fileSize;
+        this.history = history;
+    }
+
+    public Repository generate(String prefix) throws IOException {
+        Repository repo = Fixtures.newRepo(prefix);
+        for (int i = 0; i < files; i++)
+            write(repo, i, i);
+        stage(repo, List.of(repo.getWorkTree()));
+        commit(repo, "initial");
+        for (int h = 1; h < history; h++)
+            commit(repo, modify(repo, Math.max(1, files / 100)), "change " + h);
+        return repo;
+    }
+
+    public String path(int i) {
+        StringBuilder sb = new StringBuilder();
+        int n = i;
+        for (int d = 0; d < depth; d++) {
+            sb.append('d').append(n % FANOUT).append('/');
+            n /= FANOUT;
+        }
+        return sb.append('f').append(i).append(".txt").toString();
+    }
+
+    public List<Path> modify(Repository repo, int count) throws IOException {
+        List<Path> changed = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int i = (int) (edits++ * 7919 % files);
+            changed.add(write(repo, i, files + edits));
+        }
+        return changed;
+    }
+
+    public void commit(Repository repo, List<Path> changed, String message) {
+        stage(repo, changed);
+        commit(repo, message);
+    }
+
+    private Path write(Repository repo, int i, long seed) throws IOException {
+        Path file = repo.getWorkTree().resolve(path(i));
+        Files.createDirectories(file.getParent());
+        byte[] payload = Fixtures.text(fileSize, seed);
+        Fixtures.stamp(payload, seed);
+        Files.write(file, payload);
+        return file;
+    }
+
+    public void stage(Repository repo, List<Path> paths) {
+        new Index(repo, new ObjectStore(repo)).addPaths(paths, List.of(), 1);
+    }
+
+    private void commit(Repository repo, String message) {
+        PrintStream out = Fixtures.silenceStdout();
+        try {
+            new CommitCommand().run(repo, new String[] { "-m", message });
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.jit.bench;
+
+import com.jit.commands.StatusCommand;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class StatusBenchmark {
+    @Param({ "5000" })
+    public int files;
+
+    @Param({ "3" })
+    public int depth;
+
+    @Param({ "0", "5" })
+    public int dirtyPercent;
+
+    private Repository repo;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RepoGenerator gen = new RepoGenerator(files, depth, 1024, 1);
+        repo = gen.generate("jit-bench-status");
+        gen.modify(repo, files * dirtyPercent / 100);
+        stdout = Fixtures.silenceStdout();
+        new StatusCommand().run(repo, new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public void status() {
+        new StatusCommand().run(repo, new String[0]);
+    }
+}
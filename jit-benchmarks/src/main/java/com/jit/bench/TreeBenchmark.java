@@ -0,0 +1,73 @@
+package com.jit.bench;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.objects.Tree;
+import com.jit.objects.TreeCursor;
+import com.jit.repo.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class TreeBenchmark {
+    @Param({ "16", "256", "4096" })
+    public int entries;
+
+    private Repository repo;
+    private ObjectStore store;
+    private List<Tree.Entry> list;
+    private byte[] payload;
+    private String middle;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = Fixtures.newRepo("jit-bench-tree");
+        store = new ObjectStore(repo);
+        list = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            ObjectId id = store.writeObject("blob", Fixtures.text(32, i));
+            list.add(new Tree.Entry(i % 8 == 0 ? 040000 : 0100644, "entry-" + i + ".java", id));
+        }
+        payload = store.readObject(Tree.store(store, list)).payload;
+        middle = list.get(entries / 2).name;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(repo.getWorkTree());
+    }
+
+    @Benchmark
+    public List<Tree.Entry> parse() {
+        return Tree.parse(payload);
+    }
+
+    @Benchmark
+    public int cursor() {
+        TreeCursor c = new TreeCursor(payload);
+        int trees = 0;
+        while (c.next())
+            if (c.isTree())
+                trees++;
+        return trees;
+    }
+
+    @Benchmark
+    public boolean lookup() {
+        return new TreeCursor(payload).lookup(middle);
+    }
+
+    @Benchmark
+    public ObjectId store() {
+        return Tree.store(store, list);
+    }
+}
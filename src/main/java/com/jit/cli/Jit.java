@@ -5,17 +5,34 @@ import com.jit.commands.BranchCommand;
 import com.jit.commands.CatFileCommand;
 import com.jit.commands.CheckoutCommand;
 import com.jit.commands.CommitCommand;
+import com.jit.commands.CommitGraphCommand;
+import com.jit.commands.ConfigCommand;
+import com.jit.commands.FsMonitorCommand;
+import com.jit.commands.GcCommand;
 import com.jit.commands.InitCommand;
 import com.jit.commands.LogCommand;
 import com.jit.commands.LsTreeCommand;
+import com.jit.commands.ObjectFilterCommand;
+import com.jit.commands.PackRefsCommand;
+import com.jit.commands.ReflogCommand;
+import com.jit.commands.ServerCommand;
 import com.jit.commands.StatusCommand;
 import com.jit.commands.SwitchCommand;
+import com.jit.commands.UpdateRefCommand;
+import com.jit.server.JitClient;
 
 public class Jit {
     public static void main(String[] args) {
+        Integer forwarded = JitClient.tryForward(args);
+        int code = forwarded != null ? forwarded : run(args);
+        if (code != 0)
+            System.exit(code);
+    }
+
+    public static int run(String[] args) {
         if (args.length == 0) {
             System.err.println("usage: jit <command> [<args>]");
-            System.exit(1);
+            return 1;
         }
         String cmd = args[0];
         String[] rest = new String[args.length - 1];
@@ -52,13 +69,42 @@ public class Jit {
                 case "ls-tree":
                     new LsTreeCommand().run(rest);
                     break;
+                case "gc":
+                case "repack":
+                    new GcCommand().run(rest);
+                    break;
+                case "reflog":
+                    new ReflogCommand().run(rest);
+                    break;
+                case "update-ref":
+                    new UpdateRefCommand().run(rest);
+                    break;
+                case "pack-refs":
+                    new PackRefsCommand().run(rest);
+                    break;
+                case "commit-graph":
+                    new CommitGraphCommand().run(rest);
+                    break;
+                case "object-filter":
+                    new ObjectFilterCommand().run(rest);
+                    break;
+                case "config":
+                    new ConfigCommand().run(rest);
+                    break;
+                case "fsmonitor":
+                    new FsMonitorCommand().run(rest);
+                    break;
+                case "server":
+                    new ServerCommand().run(rest);
+                    break;
                 default:
                     System.err.println("unknown command");
-                    System.exit(1);
+                    return 1;
             }
         } catch (RuntimeException e) {
             System.err.println(e.getMessage());
-            System.exit(1);
+            return 1;
         }
+        return 0;
     }
 }
@@ -1,11 +1,12 @@
 package com.jit.commands;
 
+import com.jit.fsmonitor.FsMonitor;
+import com.jit.index.Ignore;
 import com.jit.index.Index;
 import com.jit.objects.ObjectStore;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -13,33 +14,35 @@ import java.util.List;
 
 public class AddCommand {
     public void run(String[] args) {
-        if (args.length == 0)
+        int jobs = Runtime.getRuntime().availableProcessors();
+        List<Path> toAdd = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ((a.equals("--jobs") || a.equals("-j")) && i + 1 < args.length)
+                jobs = parseJobs(args[++i]);
+            else if (a.startsWith("--jobs="))
+                jobs = parseJobs(a.substring(7));
+            else
+                toAdd.add(Paths.get(a));
+        }
+        if (toAdd.isEmpty())
             throw new RuntimeException("path required");
         Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
-        Index index = new Index(repo, store);
-        List<Path> toAdd = new ArrayList<>();
-        for (String a : args)
-            toAdd.add(Paths.get(a));
-        List<String> ignore = readIgnore(repo.getWorkTree());
-        index.addPaths(toAdd, ignore);
+        ObjectStore store = RepoCache.objects(repo);
+        Index index = RepoCache.index(repo, store);
+        List<String> ignore = Ignore.read(repo.getWorkTree());
+        index.addPaths(toAdd, ignore, jobs, FsMonitor.changedCandidates(repo, index.checksum()));
+        store.saveFilter();
     }
 
-    private List<String> readIgnore(Path root) {
-        Path p = root.resolve(".jitignore");
-        if (!Files.exists(p))
-            return List.of();
+    static int parseJobs(String v) {
         try {
-            List<String> lines = Files.readAllLines(p);
-            List<String> out = new ArrayList<>();
-            for (String l : lines) {
-                String t = l.trim();
-                if (!t.isEmpty())
-                    out.add(t);
-            }
-            return out;
-        } catch (IOException e) {
-            return List.of();
+            int n = Integer.parseInt(v);
+            if (n < 1)
+                throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("invalid --jobs value: " + v);
         }
     }
 }
@@ -1,5 +1,6 @@
 package com.jit.commands;
 
+import com.jit.objects.ObjectId;
 import com.jit.repo.RefStore;
 import com.jit.repo.Repository;
 
@@ -12,10 +13,9 @@ public class BranchCommand {
         String name = args[0];
         Repository repo = Repository.findRepo(Paths.get("."));
         RefStore refs = new RefStore(repo);
-        String head = refs.resolveHeadCommit();
+        ObjectId head = refs.resolveHeadCommit();
         String ref = "refs/heads/" + name;
-        if (refs.readRef(ref) != null)
+        if (!refs.createRef(ref, head, "branch: Created from HEAD"))
             throw new RuntimeException("branch exists");
-        refs.writeRef(ref, head == null ? "" : head);
     }
 }
@@ -1,24 +1,123 @@
 package com.jit.commands;
 
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 
 public class CatFileCommand {
+    private static final int OUTPUT_BUFFER = 64 * 1024;
+
     public void run(String[] args) {
-        if (args.length != 1)
-            throw new RuntimeException("hash required");
-        String hash = args[0];
+        boolean batch = false;
+        boolean check = false;
+        boolean buffer = true;
+        String hash = null;
+        for (String a : args) {
+            if (a.equals("--batch"))
+                batch = true;
+            else if (a.equals("--batch-check"))
+                check = true;
+            else if (a.equals("--buffer") || a.equals("--buffer=true"))
+                buffer = true;
+            else if (a.equals("--buffer=false") || a.equals("--no-buffer"))
+                buffer = false;
+            else if (a.startsWith("-"))
+                throw new RuntimeException("unknown option: " + a);
+            else if (hash == null)
+                hash = a;
+            else
+                throw new RuntimeException("too many arguments");
+        }
+        if (batch && check)
+            throw new RuntimeException("--batch and --batch-check are exclusive");
+        if ((batch || check) && hash != null)
+            throw new RuntimeException("batch mode reads hashes from stdin");
         Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
-        ObjectStore.StoredObject obj = store.readObject(hash);
-        System.out.println(obj.type + " " + obj.payload.length);
-        try {
-            System.out.write(obj.payload);
+        ObjectStore store = RepoCache.objects(repo);
+        if (batch || check) {
+            batch(store, batch, buffer);
+            return;
+        }
+        if (hash == null)
+            throw new RuntimeException("hash required");
+        ObjectId id = ObjectId.fromHex(hash);
+        try (ObjectStore.ObjectStream obj = store.openObject(id)) {
+            System.out.println(obj.type + " " + obj.size);
+            obj.copyTo(System.out);
+            System.out.flush();
         } catch (IOException e) {
             throw new RuntimeException("write failed");
         }
     }
+
+    private void batch(ObjectStore store, boolean contents, boolean buffer) {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        OutputStream out = new BufferedOutputStream(System.out, OUTPUT_BUFFER);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String name = line.trim();
+                if (name.isEmpty())
+                    continue;
+                if (contents)
+                    writeObject(store, name, out);
+                else
+                    writeInfo(store, name, out);
+                if (!buffer)
+                    out.flush();
+                if (System.out.checkError())
+                    return;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("cat-file batch failed");
+        }
+    }
+
+    private void writeInfo(ObjectStore store, String name, OutputStream out) throws IOException {
+        ObjectStore.ObjectInfo info;
+        try {
+            info = ObjectId.isHex(name) ? store.readInfo(ObjectId.fromHex(name)) : null;
+        } catch (RuntimeException e) {
+            info = null;
+        }
+        if (info == null)
+            write(out, name + " missing\n");
+        else
+            write(out, name.toLowerCase() + " " + info.type + " " + info.size + "\n");
+    }
+
+    private void writeObject(ObjectStore store, String name, OutputStream out) throws IOException {
+        ObjectStore.ObjectStream obj = open(store, name);
+        if (obj == null) {
+            write(out, name + " missing\n");
+            return;
+        }
+        try (obj) {
+            write(out, name.toLowerCase() + " " + obj.type + " " + obj.size + "\n");
+            obj.copyTo(out);
+            out.write('\n');
+        }
+    }
+
+    private static ObjectStore.ObjectStream open(ObjectStore store, String name) {
+        try {
+            return ObjectId.isHex(name) ? store.openObject(ObjectId.fromHex(name)) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void write(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -1,26 +1,41 @@
 package com.jit.commands;
 
+import com.jit.index.CacheTree;
+import com.jit.index.CheckoutWriter;
 import com.jit.index.Index;
+import com.jit.objects.Blob;
+import com.jit.objects.CachingObjectStore;
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
-import com.jit.objects.Tree;
+import com.jit.objects.TreeCursor;
 import com.jit.repo.RefStore;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 public class CheckoutCommand {
     public void run(String[] args) {
+        run(Repository.findRepo(Paths.get(".")), args);
+    }
+
+    public void run(Repository repo, String[] args) {
         if (args.length < 1)
             throw new RuntimeException("target required");
         boolean force = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
         List<String> rest = new ArrayList<>();
-        for (String a : args) {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
             if (a.equals("--force"))
                 force = true;
+            else if ((a.equals("--jobs") || a.equals("-j")) && i + 1 < args.length)
+                jobs = AddCommand.parseJobs(args[++i]);
+            else if (a.startsWith("--jobs="))
+                jobs = AddCommand.parseJobs(a.substring(7));
             else
                 rest.add(a);
         }
@@ -28,157 +43,235 @@ public class CheckoutCommand {
             throw new RuntimeException("target required");
         String target = rest.get(0);
 
-        Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
+        ObjectStore store = RepoCache.objects(repo);
         RefStore refs = new RefStore(repo);
 
-        String hash = null;
         String ref = "refs/heads/" + target;
-        String refVal = refs.readRef(ref);
-        boolean isBranch = false;
-        if (refVal != null) {
-            hash = refVal;
-            isBranch = true;
-        } else
-            hash = target;
-        if (hash == null || hash.isBlank())
-            throw new RuntimeException("unknown target");
-        if (hash.length() != 40)
+        String branchValue = refs.readRef(ref);
+        boolean isBranch = branchValue != null;
+        ObjectId id;
+        if (isBranch)
+            id = branchValue.isEmpty() ? null : ObjectId.fromHex(branchValue);
+        else if (ObjectId.isHex(target))
+            id = ObjectId.fromHex(target);
+        else
             throw new RuntimeException("invalid hash or unknown branch");
+        if (id == null)
+            throw new RuntimeException("unknown target");
 
-        ObjectStore.StoredObject co = store.readObject(hash);
-        if (!co.type.equals("commit"))
+        ObjectStore.ObjectInfo info = store.readInfo(id);
+        if (!info.type.equals("commit"))
             throw new RuntimeException("target not a commit");
-        String body = new String(co.payload, StandardCharsets.UTF_8);
-        String treeHash = null;
-        for (String l : body.split("\n")) {
-            if (l.startsWith("tree ")) {
-                treeHash = l.substring(5).trim();
-                break;
-            }
-        }
+        ObjectId treeHash = store.readCommit(id).tree;
         if (treeHash == null)
             throw new RuntimeException("commit missing tree");
 
-        Map<String, Tree.Entry> targetEntries = new HashMap<>();
-        collectTree(store, treeHash, "", targetEntries);
-
-        Index index = new Index(repo, store);
-        if (!force) {
-            for (var e : index.entries().entrySet()) {
-                String path = e.getKey();
-                Path abs = repo.getWorkTree().resolve(path);
-                if (Files.exists(abs)) {
-                    try {
-                        BasicFileAttributes attrs = Files.readAttributes(abs, BasicFileAttributes.class);
-                        if (attrs.size() != e.getValue().size
-                                || attrs.lastModifiedTime().toMillis() != e.getValue().mtime) {
-                            byte[] bytes = Files.readAllBytes(abs);
-                            String blob = store.writeObject("blob", bytes);
-                            Tree.Entry te = targetEntries.get(path);
-                            if (te == null || !te.hashHex.equals(blob))
-                                throw new RuntimeException("local changes would be overwritten");
-                        }
-                    } catch (IOException ex) {
-                        throw new RuntimeException("checkout failed");
-                    }
-                }
-            }
-        }
+        Index index = RepoCache.index(repo, store);
+        List<Index.Entry> sorted = new ArrayList<>(index.entries().values());
+        sorted.sort(Comparator.comparing(e -> e.path));
+        List<Change> changes = new ArrayList<>();
+        diffIndex(store, sorted, 0, sorted.size(), "", treeHash, index.cacheTree(), changes);
+
+        if (force)
+            addForced(repo, store, index, treeHash, changes);
+        else
+            for (Change c : changes)
+                checkLocal(repo, index, c);
 
+        Path root = repo.getWorkTree();
+        Map<String, ObjectId> writes = new LinkedHashMap<>();
         try {
-            Set<String> keepDirs = new HashSet<>();
-            for (String p : targetEntries.keySet()) {
-                Path abs = repo.getWorkTree().resolve(p).getParent();
-                if (abs != null)
-                    keepDirs.add(abs.toString());
-            }
-            if (refs.resolveHeadCommit() != null) {
-                Map<String, String> current = new HashMap<>();
-                String curTreeHash = null;
-                ObjectStore.StoredObject ch = store.readObject(refs.resolveHeadCommit());
-                if (ch.type.equals("commit")) {
-                    String cb = new String(ch.payload, StandardCharsets.UTF_8);
-                    for (String l : cb.split("\n"))
-                        if (l.startsWith("tree ")) {
-                            curTreeHash = l.substring(5).trim();
-                            break;
-                        }
-                }
-                if (curTreeHash != null)
-                    collectTreeBlobs(store, curTreeHash, "", current);
-                for (String path : current.keySet()) {
-                    if (!targetEntries.containsKey(path)) {
-                        Path abs = repo.getWorkTree().resolve(path);
-                        Files.deleteIfExists(abs);
-                    }
+            for (Change c : changes) {
+                if (c.newBlob != null) {
+                    writes.put(c.path, c.newBlob);
+                    continue;
                 }
-            }
-            for (var e : targetEntries.entrySet()) {
-                Path abs = repo.getWorkTree().resolve(e.getKey());
-                Files.createDirectories(abs.getParent());
-                ObjectStore.StoredObject bo = store.readObject(e.getValue().hashHex);
-                if (!bo.type.equals("blob"))
-                    throw new RuntimeException("tree entry not blob");
-                Files.write(abs, bo.payload, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                Path abs = root.resolve(c.path);
+                Files.deleteIfExists(abs);
+                pruneEmptyDirs(root, abs.getParent());
+                index.remove(c.path);
             }
         } catch (IOException ex) {
             throw new RuntimeException("checkout failed");
         }
+        List<Index.Entry> written = new CheckoutWriter(repo, store, jobs).write(writes);
 
+        String reason = "checkout: moving to " + target;
         if (isBranch)
-            refs.setHeadSymbolic(ref);
+            refs.setHeadSymbolic(ref, reason);
         else
-            refs.setHeadDetached(hash);
-
-        Index newIndex = new Index(repo, store);
-        Map<String, Index.Entry> map = new HashMap<>();
-        for (var e : targetEntries.entrySet()) {
-            Path abs = repo.getWorkTree().resolve(e.getKey());
-            try {
-                BasicFileAttributes attrs = Files.readAttributes(abs, BasicFileAttributes.class);
-                map.put(e.getKey(), new Index.Entry(e.getKey(), e.getValue().hashHex, 0100644,
-                        attrs.lastModifiedTime().toMillis(), attrs.size()));
-            } catch (IOException ex) {
-                throw new RuntimeException("index update failed");
-            }
+            refs.setHeadDetached(id, reason);
+
+        for (Index.Entry e : written)
+            index.put(e);
+        index.save();
+    }
+
+    private void checkLocal(Repository repo, Index index, Change c) {
+        Index.Entry e = index.get(c.path);
+        if (e != null && !e.id.equals(c.oldBlob) && !e.id.equals(c.newBlob))
+            throw new RuntimeException("local changes would be overwritten: " + c.path);
+        Path abs = repo.getWorkTree().resolve(c.path);
+        if (!Files.exists(abs, LinkOption.NOFOLLOW_LINKS))
+            return;
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(abs, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException ex) {
+            throw new RuntimeException("checkout failed");
+        }
+        if (attrs.isDirectory() || (e != null && index.isUpToDate(e, attrs)))
+            return;
+        ObjectId blob = Blob.hash(abs);
+        if (e == null && c.newBlob != null && !blob.equals(c.newBlob))
+            throw new RuntimeException("untracked file would be overwritten: " + c.path);
+        if (e != null && !blob.equals(e.id) && !blob.equals(c.newBlob))
+            throw new RuntimeException("local changes would be overwritten: " + c.path);
+    }
+
+    private void addForced(Repository repo, ObjectStore store, Index index, ObjectId treeHash, List<Change> changes) {
+        Set<String> seen = new HashSet<>();
+        for (Change c : changes)
+            seen.add(c.path);
+        Map<String, ObjectId> target = new HashMap<>();
+        collectTreeBlobs(store, treeHash, "", target);
+        for (var t : target.entrySet()) {
+            if (seen.contains(t.getKey()))
+                continue;
+            Index.Entry e = index.get(t.getKey());
+            if (e != null && e.id.equals(t.getValue()) && isClean(repo, index, e))
+                continue;
+            changes.add(new Change(t.getKey(), e == null ? null : e.id, t.getValue()));
         }
+    }
+
+    private boolean isClean(Repository repo, Index index, Index.Entry e) {
+        Path abs = repo.getWorkTree().resolve(e.path);
         try {
-            Path idx = repo.indexFile();
-            List<String> lines = new ArrayList<>();
-            for (var e : new TreeMap<>(map).values()) {
-                lines.add(String.join("\t", e.path, e.blob, Integer.toString(e.mode), Long.toString(e.mtime),
-                        Long.toString(e.size)));
-            }
-            Files.write(idx, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            BasicFileAttributes attrs = Files.readAttributes(abs, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return attrs.isRegularFile() && (index.isUpToDate(e, attrs) || Blob.hash(abs).equals(e.id));
         } catch (IOException ex) {
-            throw new RuntimeException("index write failed");
+            return false;
         }
     }
 
-    private void collectTree(ObjectStore store, String treeHash, String prefix, Map<String, Tree.Entry> out) {
-        ObjectStore.StoredObject to = store.readObject(treeHash);
-        if (!to.type.equals("tree"))
-            throw new RuntimeException("expected tree");
-        List<Tree.Entry> entries = Tree.parse(to.payload);
-        for (Tree.Entry e : entries) {
-            String name = prefix.isEmpty() ? e.name : prefix + "/" + e.name;
-            if (e.mode == 0100644)
-                out.put(name, e);
-            else if (e.mode == 040000)
-                collectTree(store, e.hashHex, name, out);
+    private void diffIndex(ObjectStore store, List<Index.Entry> sorted, int lo, int hi, String dir, ObjectId newTree,
+            CacheTree cache, List<Change> out) {
+        ObjectId cached = cache.get(dir, hi - lo);
+        if (cached != null) {
+            diffTrees(store, cached, newTree, dir, out);
+            return;
+        }
+        Map<String, ObjectId> blobs = new TreeMap<>();
+        Map<String, ObjectId> trees = new TreeMap<>();
+        TreeCursor n = openTree(store, newTree);
+        while (n.next())
+            (n.isTree() ? trees : blobs).put(n.name(), n.id());
+        int prefixLen = dir.isEmpty() ? 0 : dir.length() + 1;
+        int i = lo;
+        while (i < hi) {
+            Index.Entry e = sorted.get(i);
+            int slash = e.path.indexOf('/', prefixLen);
+            if (slash < 0) {
+                ObjectId blob = blobs.remove(e.path.substring(prefixLen));
+                if (!e.id.equals(blob))
+                    out.add(new Change(e.path, e.id, blob));
+                i++;
+                continue;
+            }
+            String childDir = e.path.substring(0, slash + 1);
+            int j = i + 1;
+            while (j < hi && sorted.get(j).path.startsWith(childDir))
+                j++;
+            ObjectId childTree = trees.remove(e.path.substring(prefixLen, slash));
+            diffIndex(store, sorted, i, j, e.path.substring(0, slash), childTree, cache, out);
+            i = j;
+        }
+        for (Map.Entry<String, ObjectId> t : trees.entrySet())
+            diffTrees(store, null, t.getValue(), join(dir, t.getKey()), out);
+        for (Map.Entry<String, ObjectId> b : blobs.entrySet())
+            out.add(new Change(join(dir, b.getKey()), null, b.getValue()));
+    }
+
+    private void diffTrees(ObjectStore store, ObjectId oldTree, ObjectId newTree, String prefix, List<Change> out) {
+        if (Objects.equals(oldTree, newTree))
+            return;
+        TreeCursor o = openTree(store, oldTree);
+        TreeCursor n = openTree(store, newTree);
+        boolean hasOld = o.next();
+        boolean hasNew = n.next();
+        while (hasOld || hasNew) {
+            int cmp = !hasOld ? 1 : !hasNew ? -1 : o.compareName(n);
+            if (cmp == 0 && o.isTree() == n.isTree()) {
+                if (!o.idEquals(n)) {
+                    String path = join(prefix, o.name());
+                    if (o.isTree())
+                        diffTrees(store, o.id(), n.id(), path, out);
+                    else
+                        out.add(new Change(path, o.id(), n.id()));
+                }
+                hasOld = o.next();
+                hasNew = n.next();
+                continue;
+            }
+            if (cmp <= 0) {
+                String path = join(prefix, o.name());
+                if (o.isTree())
+                    diffTrees(store, o.id(), null, path, out);
+                else
+                    out.add(new Change(path, o.id(), null));
+                hasOld = o.next();
+            }
+            if (cmp >= 0) {
+                String path = join(prefix, n.name());
+                if (n.isTree())
+                    diffTrees(store, null, n.id(), path, out);
+                else
+                    out.add(new Change(path, null, n.id()));
+                hasNew = n.next();
+            }
         }
     }
 
-    private void collectTreeBlobs(ObjectStore store, String treeHash, String prefix, Map<String, String> out) {
-        ObjectStore.StoredObject to = store.readObject(treeHash);
-        List<Tree.Entry> entries = Tree.parse(to.payload);
-        for (Tree.Entry e : entries) {
-            String name = prefix.isEmpty() ? e.name : prefix + "/" + e.name;
-            if (e.mode == 0100644)
-                out.put(name, e.hashHex);
-            else if (e.mode == 040000)
-                collectTreeBlobs(store, e.hashHex, name, out);
+    private TreeCursor openTree(ObjectStore store, ObjectId treeHash) {
+        return treeHash == null ? new TreeCursor(new byte[0]) : store.openTree(treeHash);
+    }
+
+    private static String join(String prefix, String name) {
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private void pruneEmptyDirs(Path root, Path dir) throws IOException {
+        while (dir != null && !dir.equals(root) && Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                if (ds.iterator().hasNext())
+                    return;
+            }
+            Files.delete(dir);
+            dir = dir.getParent();
+        }
+    }
+
+    private void collectTreeBlobs(ObjectStore store, ObjectId treeHash, String prefix, Map<String, ObjectId> out) {
+        TreeCursor c = store.openTree(treeHash);
+        while (c.next()) {
+            String name = prefix.isEmpty() ? c.name() : prefix + "/" + c.name();
+            if (c.mode() == 0100644)
+                out.put(name, c.id());
+            else if (c.isTree())
+                collectTreeBlobs(store, c.id(), name, out);
+        }
+    }
+
+    private static class Change {
+        final String path;
+        final ObjectId oldBlob;
+        final ObjectId newBlob;
+
+        Change(String path, ObjectId oldBlob, ObjectId newBlob) {
+            this.path = path;
+            this.oldBlob = oldBlob;
+            this.newBlob = newBlob;
         }
     }
 }
@@ -1,11 +1,15 @@
 package com.jit.commands;
 
+import com.jit.index.CacheTree;
 import com.jit.index.Index;
 import com.jit.objects.Commit;
+import com.jit.objects.CommitGraph;
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
 import com.jit.objects.Tree;
 import com.jit.repo.RefStore;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
@@ -13,6 +17,10 @@ import java.util.*;
 
 public class CommitCommand {
     public void run(String[] args) {
+        run(Repository.findRepo(Paths.get(".")), args);
+    }
+
+    public void run(Repository repo, String[] args) {
         String message = null;
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-m") && i + 1 < args.length) {
@@ -22,69 +30,73 @@ public class CommitCommand {
         }
         if (message == null)
             throw new RuntimeException("missing -m message");
-        Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
-        Index index = new Index(repo, store);
+        ObjectStore store = RepoCache.objects(repo);
+        Index index = RepoCache.index(repo, store);
         if (index.entries().isEmpty())
             throw new RuntimeException("nothing to commit");
 
-        Map<String, Index.Entry> entries = new TreeMap<>(index.entries());
-        String rootTree = writeTrees(store, entries);
+        List<Index.Entry> sorted = new ArrayList<>(index.entries().values());
+        sorted.sort(Comparator.comparing(e -> e.path));
+        CacheTree cache = index.cacheTree();
+        ObjectId rootTree = writeTrees(store, sorted, cache);
+        if (cache.isChanged())
+            index.trySave();
 
         RefStore refs = new RefStore(repo);
-        String parent = refs.resolveHeadCommit();
+        ObjectId parent = refs.resolveHeadCommit();
         String authorName = System.getenv().getOrDefault("JIT_AUTHOR_NAME", "User");
         String authorEmail = System.getenv().getOrDefault("JIT_AUTHOR_EMAIL", "user@example.com");
         Commit commit = new Commit(rootTree, parent, authorName, authorEmail, Commit.nowIso(), message);
         byte[] payload = commit.serializePayload();
-        String hash = store.writeObject("commit", payload);
+        ObjectId id = store.writeObject("commit", payload);
+        store.saveFilter();
+        CommitGraph.append(repo, id, commit);
+        int nl = message.indexOf('\n');
+        String reason = (parent == null ? "commit (initial): " : "commit: ")
+                + (nl < 0 ? message : message.substring(0, nl));
 
         if (refs.isHeadSymbolic()) {
             String ref = refs.headTargetRef();
             if (ref == null)
                 throw new RuntimeException("HEAD invalid");
-            refs.writeRef(ref, hash);
-        } else {
-            refs.setHeadDetached(hash);
+            if (!refs.compareAndSet(ref, parent, id, reason))
+                throw new RuntimeException("cannot update " + ref + ": it moved during commit");
+        } else if (!refs.compareAndSetHead(parent, id, reason)) {
+            throw new RuntimeException("cannot update HEAD: it moved during commit");
         }
-        System.out.println("Committed " + hash);
+        System.out.println("Committed " + id);
     }
 
-    private String writeTrees(ObjectStore store, Map<String, Index.Entry> entries) {
-        Map<String, String> fileToBlob = new TreeMap<>();
-        for (var e : entries.entrySet())
-            fileToBlob.put(e.getKey(), e.getValue().blob);
-        Map<String, String> dirToHash = new HashMap<>();
-        return buildDirTree(store, "", fileToBlob, dirToHash);
+    private ObjectId writeTrees(ObjectStore store, List<Index.Entry> sorted, CacheTree cache) {
+        return buildDirTree(store, sorted, 0, sorted.size(), "", cache);
     }
 
-    private String buildDirTree(ObjectStore store, String dir, Map<String, String> fileToBlob,
-            Map<String, String> cache) {
-        if (cache.containsKey(dir))
-            return cache.get(dir);
+    private ObjectId buildDirTree(ObjectStore store, List<Index.Entry> sorted, int lo, int hi, String dir,
+            CacheTree cache) {
+        ObjectId cached = cache.get(dir, hi - lo);
+        if (cached != null)
+            return cached;
+        int prefixLen = dir.isEmpty() ? 0 : dir.length() + 1;
         List<Tree.Entry> list = new ArrayList<>();
-        int dirLen = dir.isEmpty() ? 0 : dir.length() + 1;
-        Set<String> childDirs = new TreeSet<>();
-        for (String path : fileToBlob.keySet()) {
-            if (dir.isEmpty() ? !path.contains("/") : path.startsWith(dir + "/")) {
-                String rest = dir.isEmpty() ? path : path.substring(dirLen);
-                int slash = rest.indexOf('/');
-                if (slash < 0) {
-                    String name = rest;
-                    list.add(new Tree.Entry(0100644, name, fileToBlob.get(path)));
-                } else {
-                    String child = rest.substring(0, slash);
-                    childDirs.add(child);
-                }
+        int i = lo;
+        while (i < hi) {
+            String path = sorted.get(i).path;
+            int slash = path.indexOf('/', prefixLen);
+            if (slash < 0) {
+                list.add(new Tree.Entry(0100644, path.substring(prefixLen), sorted.get(i).id));
+                i++;
+                continue;
             }
+            String childDir = path.substring(0, slash + 1);
+            int j = i + 1;
+            while (j < hi && sorted.get(j).path.startsWith(childDir))
+                j++;
+            ObjectId childHash = buildDirTree(store, sorted, i, j, path.substring(0, slash), cache);
+            list.add(new Tree.Entry(040000, path.substring(prefixLen, slash), childHash));
+            i = j;
         }
-        for (String child : childDirs) {
-            String childPath = dir.isEmpty() ? child : dir + "/" + child;
-            String childHash = buildDirTree(store, childPath, fileToBlob, cache);
-            list.add(new Tree.Entry(040000, child, childHash));
-        }
-        String hash = Tree.store(store, list);
-        cache.put(dir, hash);
-        return hash;
+        ObjectId id = Tree.store(store, list);
+        cache.put(dir, id, hi - lo);
+        return id;
     }
 }
@@ -0,0 +1,45 @@
+package com.jit.commands;
+
+import com.jit.objects.CommitGraph;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommitGraphCommand {
+    public void run(String[] args) {
+        String sub = args.length == 0 ? "write" : args[0];
+        Repository repo = Repository.findRepo(Paths.get("."));
+        switch (sub) {
+            case "write": {
+                int n = CommitGraph.write(repo, new ObjectStore(repo), tips(repo));
+                System.out.println("Wrote commit-graph with " + n + " commits");
+                break;
+            }
+            case "info": {
+                CommitGraph graph = CommitGraph.open(repo);
+                if (graph == null) {
+                    System.out.println("no commit-graph");
+                    break;
+                }
+                System.out.println("commits " + graph.size());
+                break;
+            }
+            default:
+                throw new RuntimeException("usage: commit-graph [write|info]");
+        }
+    }
+
+    static List<ObjectId> tips(Repository repo) {
+        RefStore refs = new RefStore(repo);
+        List<ObjectId> tips = new ArrayList<>(refs.listRefs().values());
+        ObjectId head = refs.resolveHeadCommit();
+        if (head != null && !tips.contains(head))
+            tips.add(head);
+        return tips;
+    }
+}
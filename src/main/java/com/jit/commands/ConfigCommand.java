@@ -0,0 +1,30 @@
+package com.jit.commands;
+
+import com.jit.repo.Config;
+import com.jit.repo.Repository;
+
+import java.nio.file.Paths;
+
+public class ConfigCommand {
+    public void run(String[] args) {
+        Repository repo = Repository.findRepo(Paths.get("."));
+        Config config = repo.config();
+        if (args.length == 1 && args[0].equals("--list")) {
+            for (var e : config.all().entrySet())
+                System.out.println(e.getKey() + "=" + e.getValue());
+            return;
+        }
+        if (args.length == 1) {
+            String v = config.get(args[0]);
+            if (v == null)
+                throw new RuntimeException("key not set: " + args[0]);
+            System.out.println(v);
+            return;
+        }
+        if (args.length == 2) {
+            config.set(args[0], args[1]);
+            return;
+        }
+        throw new RuntimeException("usage: jit config <key> [<value>] | --list");
+    }
+}
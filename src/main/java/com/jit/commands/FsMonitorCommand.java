@@ -0,0 +1,75 @@
+package com.jit.commands;
+
+import com.jit.fsmonitor.FsMonitor;
+import com.jit.fsmonitor.FsMonitorDaemon;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class FsMonitorCommand {
+    private static final long START_TIMEOUT_MS = 5000;
+
+    public void run(String[] args) {
+        String sub = args.length == 0 ? "status" : args[0];
+        Repository repo = Repository.findRepo(Paths.get("."));
+        switch (sub) {
+            case "run":
+                new FsMonitorDaemon(repo).run();
+                break;
+            case "start":
+                start(repo);
+                break;
+            case "stop":
+                stop(repo);
+                break;
+            case "status":
+                long pid = FsMonitor.readPid(repo);
+                System.out.println(pid > 0 ? "fsmonitor running (pid " + pid + ")" : "fsmonitor not running");
+                break;
+            default:
+                throw new RuntimeException("usage: jit fsmonitor start|stop|status|run");
+        }
+    }
+
+    private void start(Repository repo) {
+        if (FsMonitor.isRunning(repo)) {
+            System.out.println("fsmonitor already running");
+            return;
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> cmd = List.of(java, "-cp", System.getProperty("java.class.path"), "com.jit.cli.Jit",
+                "fsmonitor", "run");
+        try {
+            Files.createDirectories(repo.fsmonitorDir());
+            Path log = repo.fsmonitorDir().resolve("daemon.log");
+            new ProcessBuilder(cmd).directory(repo.getWorkTree().toFile())
+                    .redirectOutput(log.toFile()).redirectErrorStream(true).start();
+            long deadline = System.currentTimeMillis() + START_TIMEOUT_MS;
+            while (!FsMonitor.isRunning(repo)) {
+                if (System.currentTimeMillis() > deadline)
+                    throw new RuntimeException("fsmonitor did not start, see " + log);
+                Thread.sleep(20);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("fsmonitor start failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("fsmonitor start interrupted");
+        }
+        System.out.println("fsmonitor started (pid " + FsMonitor.readPid(repo) + ")");
+    }
+
+    private void stop(Repository repo) {
+        long pid = FsMonitor.readPid(repo);
+        if (pid <= 0) {
+            System.out.println("fsmonitor not running");
+            return;
+        }
+        ProcessHandle.of(pid).ifPresent(ProcessHandle::destroy);
+        System.out.println("fsmonitor stopped");
+    }
+}
@@ -0,0 +1,33 @@
+package com.jit.commands;
+
+import com.jit.objects.CommitGraph;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.objects.Repacker;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GcCommand {
+    public void run(String[] args) {
+        Repository repo = Repository.findRepo(Paths.get("."));
+        ObjectStore store = new ObjectStore(repo);
+        RefStore refs = new RefStore(repo);
+        List<ObjectId> tips = new ArrayList<>();
+        ObjectId head = refs.resolveHeadCommit();
+        if (head != null)
+            tips.add(head);
+        tips.addAll(refs.listRefs().values());
+        Repacker.Result r = new Repacker(repo, store).repack(tips);
+        CommitGraph.write(repo, store, tips);
+        store.writeFilter();
+        refs.packRefs();
+        if (r.pack == null)
+            System.out.println("Nothing to pack");
+        else
+            System.out.println("Packed " + r.objects + " objects (" + r.deltas + " deltas) into " + r.pack);
+    }
+}
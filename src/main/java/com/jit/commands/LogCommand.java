@@ -1,55 +1,120 @@
 package com.jit.commands;
 
+import com.jit.objects.Commit;
+import com.jit.objects.CommitGraph;
+import com.jit.objects.CommitWalk;
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
 import com.jit.repo.RefStore;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 
 public class LogCommand {
+    private static final int OUTPUT_BUFFER = 64 * 1024;
+
     public void run(String[] args) {
+        long limit = Long.MAX_VALUE;
+        long since = Long.MIN_VALUE;
+        long until = Long.MAX_VALUE;
+        boolean oneline = false;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (a.equals("-n") && i + 1 < args.length)
+                limit = parseCount(args[++i]);
+            else if (a.startsWith("--max-count="))
+                limit = parseCount(a.substring(12));
+            else if (a.startsWith("-n"))
+                limit = parseCount(a.substring(2));
+            else if (a.equals("--since") && i + 1 < args.length)
+                since = parseDate(args[++i]);
+            else if (a.startsWith("--since="))
+                since = parseDate(a.substring(8));
+            else if (a.equals("--until") && i + 1 < args.length)
+                until = parseDate(args[++i]);
+            else if (a.startsWith("--until="))
+                until = parseDate(a.substring(8));
+            else if (a.equals("--oneline"))
+                oneline = true;
+            else
+                throw new RuntimeException("unknown option: " + a);
+        }
+
         Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
+        ObjectStore store = RepoCache.objects(repo);
         RefStore refs = new RefStore(repo);
-        String head = refs.resolveHeadCommit();
-        if (head == null || head.isBlank())
+        ObjectId head = refs.resolveHeadCommit();
+        if (head == null)
             return;
-        String cur = head;
-        while (cur != null && !cur.isBlank()) {
-            ObjectStore.StoredObject obj = store.readObject(cur);
-            if (!obj.type.equals("commit"))
-                throw new RuntimeException("object is not commit");
-            String body = new String(obj.payload, StandardCharsets.UTF_8);
-            String tree = null, parent = null, author = null, timestamp = null, message = "";
-            String[] lines = body.split("\n");
-            int i = 0;
-            for (; i < lines.length; i++) {
-                String l = lines[i];
-                if (l.isEmpty()) {
-                    i++;
+        CommitWalk walk = new CommitWalk(store, CommitGraph.open(repo), head);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER);
+        try {
+            long shown = 0;
+            while (shown < limit && walk.hasNext()) {
+                CommitWalk.Node n = walk.next();
+                long time = n.time();
+                if (time < since)
                     break;
+                if (time > until)
+                    continue;
+                Commit c = n.commit();
+                if (oneline) {
+                    int nl = c.message.indexOf('\n');
+                    out.write(n.id.abbreviate(7));
+                    out.write(' ');
+                    out.write(nl < 0 ? c.message : c.message.substring(0, nl));
+                    out.write('\n');
+                } else {
+                    out.write("commit " + n.id + "\n");
+                    out.write("Author: " + c.author() + "\n");
+                    out.write("Date:   " + c.timestamp + "\n");
+                    out.write("\n");
+                    out.write("    " + c.message.replace("\n", "\n    ") + "\n");
+                    out.write("\n");
                 }
-                if (l.startsWith("tree "))
-                    tree = l.substring(5).trim();
-                else if (l.startsWith("parent "))
-                    parent = l.substring(7).trim();
-                else if (l.startsWith("author "))
-                    author = l.substring(7).trim();
-                else if (l.startsWith("timestamp "))
-                    timestamp = l.substring(10).trim();
+                shown++;
+                if (shown % 64 == 0) {
+                    out.flush();
+                    if (System.out.checkError())
+                        return;
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("write failed");
+        }
+    }
+
+    private static long parseCount(String s) {
+        try {
+            long n = Long.parseLong(s);
+            if (n < 0)
+                throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("invalid count: " + s);
+        }
+    }
+
+    private static long parseDate(String s) {
+        try {
+            return Instant.parse(s).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(s).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e2) {
+                throw new RuntimeException("invalid date: " + s);
             }
-            StringBuilder msg = new StringBuilder();
-            for (; i < lines.length; i++)
-                msg.append(i == lines.length - 1 ? lines[i] : lines[i] + "\n");
-            message = msg.toString();
-            System.out.println("commit " + cur);
-            System.out.println("Author: " + author);
-            System.out.println("Date:   " + timestamp);
-            System.out.println();
-            System.out.println("    " + message.replace("\n", "\n    "));
-            System.out.println();
-            cur = parent;
         }
     }
 }
@@ -1,28 +1,47 @@
 package com.jit.commands;
 
+import com.jit.objects.CachingObjectStore;
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
-import com.jit.objects.Tree;
+import com.jit.objects.TreeCursor;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
 import java.nio.file.Paths;
-import java.util.Comparator;
-import java.util.List;
 
 public class LsTreeCommand {
     public void run(String[] args) {
-        if (args.length != 1)
+        if (args.length != 1 && args.length != 2)
             throw new RuntimeException("hash required");
-        String hash = args[0];
+        ObjectId id = ObjectId.fromHex(args[0]);
         Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
-        ObjectStore.StoredObject obj = store.readObject(hash);
-        if (!obj.type.equals("tree"))
+        ObjectStore store = RepoCache.objects(repo);
+        if (!store.readInfo(id).type.equals("tree"))
             throw new RuntimeException("not a tree");
-        List<Tree.Entry> entries = Tree.parse(obj.payload);
-        entries.sort(Comparator.comparing(e -> e.name));
-        for (Tree.Entry e : entries) {
-            String type = e.mode == 040000 ? "tree" : "blob";
-            System.out.println(String.format("%06o %s %s\t%s", e.mode, type, e.hashHex, e.name));
+        TreeCursor c = store.openTree(id);
+        String prefix = "";
+        if (args.length == 2) {
+            String path = args[1];
+            boolean contents = path.endsWith("/");
+            String[] parts = (contents ? path.substring(0, path.length() - 1) : path).split("/", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (!c.lookup(parts[i]) || (i < parts.length - 1 || contents) && !c.isTree())
+                    throw new RuntimeException("path not found: " + path);
+                if (i < parts.length - 1 || contents)
+                    c = store.openTree(c.id());
+            }
+            if (!contents) {
+                print(c, path);
+                return;
+            }
+            prefix = path;
         }
+        while (c.next())
+            print(c, prefix + c.name());
+    }
+
+    private void print(TreeCursor c, String name) {
+        String type = c.isTree() ? "tree" : "blob";
+        System.out.println(String.format("%06o %s %s\t%s", c.mode(), type, c.id(), name));
     }
 }
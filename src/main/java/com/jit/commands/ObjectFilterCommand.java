@@ -0,0 +1,61 @@
+package com.jit.commands;
+
+import com.jit.objects.BloomFilter;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
+
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ObjectFilterCommand {
+    private static final int SAMPLES = 100_000;
+
+    public void run(String[] args) {
+        String sub = args.length == 0 ? "write" : args[0];
+        Repository repo = Repository.findRepo(Paths.get("."));
+        ObjectStore store = RepoCache.objects(repo);
+        switch (sub) {
+            case "write": {
+                BloomFilter f = store.writeFilter();
+                System.out.println("Wrote object-filter with " + f.count() + " objects");
+                break;
+            }
+            case "info": {
+                BloomFilter f = store.filter();
+                if (f == null) {
+                    System.out.println("no object-filter");
+                    break;
+                }
+                System.out.println("objects " + f.count());
+                System.out.println("capacity " + f.capacity());
+                System.out.println("bits " + f.bits());
+                System.out.println("hashes " + f.hashes());
+                System.out.println("memory " + f.memoryBytes());
+                System.out.println("fpp-expected " + percent(f.expectedFpp()));
+                System.out.println("fpp-sampled " + percent(sample(f)));
+                break;
+            }
+            default:
+                throw new RuntimeException("usage: object-filter [write|info]");
+        }
+    }
+
+    private static double sample(BloomFilter f) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        byte[] raw = new byte[ObjectId.RAW_LENGTH];
+        int hits = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            rnd.nextBytes(raw);
+            if (f.mightContain(ObjectId.fromRaw(raw)))
+                hits++;
+        }
+        return (double) hits / SAMPLES;
+    }
+
+    private static String percent(double p) {
+        return String.format(Locale.ROOT, "%.3f%%", p * 100);
+    }
+}
@@ -0,0 +1,16 @@
+package com.jit.commands;
+
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+
+import java.nio.file.Paths;
+
+public class PackRefsCommand {
+    public void run(String[] args) {
+        if (args.length != 0)
+            throw new RuntimeException("usage: jit pack-refs");
+        Repository repo = Repository.findRepo(Paths.get("."));
+        int n = new RefStore(repo).packRefs();
+        System.out.println("Packed " + n + " refs");
+    }
+}
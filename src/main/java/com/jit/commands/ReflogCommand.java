@@ -0,0 +1,55 @@
+package com.jit.commands;
+
+import com.jit.repo.RefStore;
+import com.jit.repo.Reflog;
+import com.jit.repo.Repository;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class ReflogCommand {
+    public void run(String[] args) {
+        int limit = Integer.MAX_VALUE;
+        String ref = null;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (a.equals("-n") && i + 1 < args.length)
+                limit = (int) Math.min(Integer.MAX_VALUE, parseCount(args[++i]));
+            else if (a.startsWith("-n"))
+                limit = (int) Math.min(Integer.MAX_VALUE, parseCount(a.substring(2)));
+            else if (a.startsWith("-"))
+                throw new RuntimeException("unknown option: " + a);
+            else if (ref == null)
+                ref = a;
+            else
+                throw new RuntimeException("too many arguments");
+        }
+        Repository repo = Repository.findRepo(Paths.get("."));
+        Reflog reflog = new Reflog(repo);
+        String name = ref == null ? "HEAD" : ref;
+        String full = name;
+        if (!name.equals("HEAD") && !name.startsWith("refs/"))
+            full = "refs/heads/" + name;
+        if (!Files.exists(reflog.file(full)) && new RefStore(repo).readRef(full) == null && !full.equals("HEAD"))
+            throw new RuntimeException("unknown ref: " + name);
+        int i = 0;
+        StringBuilder sb = new StringBuilder();
+        for (Reflog.Entry e : reflog.read(full, limit)) {
+            sb.append(e.id == null ? "0000000" : e.id.abbreviate(7)).append(' ').append(name).append("@{")
+                    .append(i++).append("}: ").append(e.reason).append('\n');
+        }
+        System.out.print(sb);
+        System.out.flush();
+    }
+
+    private static long parseCount(String s) {
+        try {
+            long n = Long.parseLong(s);
+            if (n < 0)
+                throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("invalid count: " + s);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jit.commands;
+
+import com.jit.repo.Repository;
+import com.jit.server.JitServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class ServerCommand {
+    private static final long START_TIMEOUT_MS = 5000;
+
+    public void run(String[] args) {
+        String sub = args.length == 0 ? "status" : args[0];
+        Repository repo = Repository.findRepo(Paths.get("."));
+        switch (sub) {
+            case "run":
+                new JitServer(repo).run();
+                break;
+            case "start":
+                start(repo);
+                break;
+            case "stop":
+                stop(repo);
+                break;
+            case "status":
+                long pid = JitServer.readPid(repo);
+                System.out.println(pid > 0 ? "server running (pid " + pid + ")" : "server not running");
+                break;
+            default:
+                throw new RuntimeException("usage: jit server start|stop|status|run");
+        }
+    }
+
+    private void start(Repository repo) {
+        if (JitServer.isRunning(repo)) {
+            System.out.println("server already running");
+            return;
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> cmd = List.of(java, "-cp", System.getProperty("java.class.path"), "com.jit.cli.Jit",
+                "server", "run");
+        try {
+            Files.createDirectories(repo.serverDir());
+            Path log = repo.serverDir().resolve("log");
+            new ProcessBuilder(cmd).directory(repo.getWorkTree().toFile())
+                    .redirectOutput(log.toFile()).redirectErrorStream(true).start();
+            long deadline = System.currentTimeMillis() + START_TIMEOUT_MS;
+            while (!JitServer.isRunning(repo)) {
+                if (System.currentTimeMillis() > deadline)
+                    throw new RuntimeException("server did not start, see " + log);
+                Thread.sleep(20);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("server start failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("server start interrupted");
+        }
+        System.out.println("server started (pid " + JitServer.readPid(repo) + ")");
+    }
+
+    private void stop(Repository repo) {
+        long pid = JitServer.readPid(repo);
+        if (pid <= 0) {
+            System.out.println("server not running");
+            return;
+        }
+        ProcessHandle.of(pid).ifPresent(ProcessHandle::destroy);
+        System.out.println("server stopped");
+    }
+}
@@ -1,39 +1,39 @@
 package com.jit.commands;
 
+import com.jit.fsmonitor.FsMonitor;
+import com.jit.fsmonitor.StatusSnapshot;
+import com.jit.index.Ignore;
 import com.jit.index.Index;
+import com.jit.index.UntrackedCache;
+import com.jit.objects.Blob;
+import com.jit.objects.CachingObjectStore;
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
-import com.jit.objects.Tree;
+import com.jit.objects.TreeCursor;
 import com.jit.repo.RefStore;
 import com.jit.repo.Repository;
+import com.jit.server.RepoCache;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 public class StatusCommand {
     public void run(String[] args) {
-        Repository repo = Repository.findRepo(Paths.get("."));
-        ObjectStore store = new ObjectStore(repo);
-        Index index = new Index(repo, store);
+        run(Repository.findRepo(Paths.get(".")), args);
+    }
+
+    public void run(Repository repo, String[] args) {
+        ObjectStore store = RepoCache.objects(repo);
+        Index index = RepoCache.index(repo, store);
         RefStore refs = new RefStore(repo);
-        String head = refs.resolveHeadCommit();
+        ObjectId head = refs.resolveHeadCommit();
         Map<String, Index.Entry> idx = new TreeMap<>(index.entries());
 
-        Map<String, String> headBlobs = new HashMap<>();
+        Map<String, ObjectId> headBlobs = new HashMap<>();
         if (head != null) {
-            ObjectStore.StoredObject co = store.readObject(head);
-            if (!co.type.equals("commit"))
-                throw new RuntimeException("HEAD not commit");
-            String commitText = new String(co.payload, StandardCharsets.UTF_8);
-            String treeHash = null;
-            for (String l : commitText.split("\n")) {
-                if (l.startsWith("tree ")) {
-                    treeHash = l.substring(5).trim();
-                    break;
-                }
-            }
+            ObjectId treeHash = store.readCommit(head).tree;
             if (treeHash != null)
                 collectTreeBlobs(store, treeHash, "", headBlobs);
         }
@@ -41,45 +41,40 @@ public class StatusCommand {
         List<String> staged = new ArrayList<>();
         for (var e : idx.entrySet()) {
             String path = e.getKey();
-            String headBlob = headBlobs.get(path);
-            if (headBlob == null || !headBlob.equals(e.getValue().blob))
+            ObjectId headBlob = headBlobs.get(path);
+            if (headBlob == null || !headBlob.equals(e.getValue().id))
                 staged.add(path);
         }
 
-        List<String> modified = new ArrayList<>();
-        List<String> untracked = new ArrayList<>();
-        Path root = repo.getWorkTree();
+        List<String> ignore = Ignore.read(repo.getWorkTree());
+        TreeSet<String> modified = new TreeSet<>();
+        TreeSet<String> untracked = new TreeSet<>();
+        String ignoreDigest = Ignore.digest(repo.getWorkTree());
+        StatusSnapshot snap = StatusSnapshot.read(repo);
+        String since = snap != null && snap.matches(index.checksum(), ignoreDigest) ? snap.token : null;
+        FsMonitor.Changes changes = FsMonitor.query(repo, since);
         try {
-            Files.walkFileTree(root, new SimpleFileVisitor<>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                    if (dir.equals(repo.getJitDir()))
-                        return FileVisitResult.SKIP_SUBTREE;
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    Path relp = root.relativize(file);
-                    String rel = relp.toString();
-                    Index.Entry ie = idx.get(rel);
-                    if (ie == null) {
-                        if (!rel.startsWith(Repository.JIT_DIR + "/"))
-                            untracked.add(rel);
-                    } else {
-                        if (ie.size != attrs.size() || ie.mtime != attrs.lastModifiedTime().toMillis()) {
-                            byte[] bytes = Files.readAllBytes(file);
-                            String blob = store.writeObject("blob", bytes);
-                            if (!blob.equals(ie.blob))
-                                modified.add(rel);
-                        }
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            if (changes != null && changes.isComplete()) {
+                modified.addAll(snap.modified);
+                untracked.addAll(snap.untracked);
+                for (String p : changes.paths)
+                    refresh(repo, index, idx, ignore, p, modified, untracked);
+                if (index.isRefreshed())
+                    index.trySave();
+            } else {
+                for (Index.Entry e : idx.values())
+                    checkTracked(repo, index, e, modified);
+                if (index.isRefreshed())
+                    index.trySave();
+                UntrackedCache cache = new UntrackedCache(repo);
+                untracked.addAll(cache.untracked(idx, ignore));
+                cache.save();
+            }
         } catch (IOException e) {
             throw new RuntimeException("status failed");
         }
+        if (changes != null)
+            new StatusSnapshot(changes.token, index.checksum(), ignoreDigest, modified, untracked).write(repo);
 
         System.out.println("Changes to be committed:");
         for (String s : staged)
@@ -94,17 +89,87 @@ public class StatusCommand {
             System.out.println("  " + s);
     }
 
-    private void collectTreeBlobs(ObjectStore store, String treeHash, String prefix, Map<String, String> out) {
-        ObjectStore.StoredObject to = store.readObject(treeHash);
-        if (!to.type.equals("tree"))
-            throw new RuntimeException("expected tree");
-        List<Tree.Entry> entries = Tree.parse(to.payload);
-        for (Tree.Entry e : entries) {
-            String name = prefix.isEmpty() ? e.name : prefix + "/" + e.name;
-            if (e.mode == 0100644)
-                out.put(name, e.hashHex);
-            else if (e.mode == 040000)
-                collectTreeBlobs(store, e.hashHex, name, out);
+    private void checkTracked(Repository repo, Index index, Index.Entry e, Set<String> modified)
+            throws IOException {
+        Path file = repo.getWorkTree().resolve(e.path);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        if (attrs.isDirectory())
+            return;
+        if (index.isUpToDate(e, attrs))
+            return;
+        if (Blob.hash(file).equals(e.id))
+            index.refresh(e, attrs);
+        else
+            modified.add(e.path);
+    }
+
+    private void refresh(Repository repo, Index index, Map<String, Index.Entry> idx, List<String> ignore,
+            String rel, TreeSet<String> modified, TreeSet<String> untracked) throws IOException {
+        for (TreeSet<String> set : List.of(modified, untracked)) {
+            set.remove(rel);
+            set.subSet(rel + "/", rel + "0").clear();
+        }
+        Path abs = repo.getWorkTree().resolve(rel);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(abs, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (attrs.isDirectory())
+            walk(repo, index, idx, ignore, abs, modified, untracked);
+        else
+            classify(repo, index, idx, ignore, rel, modified, untracked);
+    }
+
+    private void walk(Repository repo, Index index, Map<String, Index.Entry> idx, List<String> ignore,
+            Path start, Set<String> modified, Set<String> untracked) throws IOException {
+        Path root = repo.getWorkTree();
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(repo.getJitDir()))
+                    return FileVisitResult.SKIP_SUBTREE;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                classify(repo, index, idx, ignore, root.relativize(file).toString(), modified, untracked);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void classify(Repository repo, Index index, Map<String, Index.Entry> idx, List<String> ignore,
+            String rel, Set<String> modified, Set<String> untracked) throws IOException {
+        Index.Entry ie = idx.get(rel);
+        if (ie != null)
+            checkTracked(repo, index, ie, modified);
+        else if (!rel.startsWith(Repository.JIT_DIR + "/") && !ignoredWithParents(ignore, rel))
+            untracked.add(rel);
+    }
+
+    private boolean ignoredWithParents(List<String> ignore, String rel) {
+        for (int slash = rel.indexOf('/'); slash >= 0; slash = rel.indexOf('/', slash + 1))
+            if (Ignore.isIgnored(ignore, rel.substring(0, slash)))
+                return true;
+        return Ignore.isIgnored(ignore, rel);
+    }
+
+    private void collectTreeBlobs(ObjectStore store, ObjectId treeHash, String prefix, Map<String, ObjectId> out) {
+        TreeCursor c = store.openTree(treeHash);
+        while (c.next()) {
+            String name = prefix.isEmpty() ? c.name() : prefix + "/" + c.name();
+            if (c.mode() == 0100644)
+                out.put(name, c.id());
+            else if (c.isTree())
+                collectTreeBlobs(store, c.id(), name, out);
         }
     }
 }
@@ -15,6 +15,6 @@ public class SwitchCommand {
         String ref = "refs/heads/" + name;
         if (refs.readRef(ref) == null)
             throw new RuntimeException("branch not found");
-        refs.setHeadSymbolic(ref);
+        refs.setHeadSymbolic(ref, "switch: moving to " + name);
     }
 }
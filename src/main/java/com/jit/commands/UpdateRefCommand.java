@@ -0,0 +1,110 @@
+package com.jit.commands;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.RefStore;
+import com.jit.repo.RefTransaction;
+import com.jit.repo.Repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+public class UpdateRefCommand {
+    private static final String ZERO = "0".repeat(ObjectId.HEX_LENGTH);
+
+    public void run(String[] args) {
+        Repository repo = Repository.findRepo(Paths.get("."));
+        RefStore refs = new RefStore(repo);
+        RefTransaction tx = refs.transaction("update-ref");
+        Set<ObjectId> targets = new HashSet<>();
+        if (args.length == 1 && args[0].equals("--stdin")) {
+            readStdin(tx, targets);
+        } else if (args.length >= 2 && args.length <= 3 && args[0].equals("-d")) {
+            queue(tx, targets, "delete", args[1], null, args.length == 3 ? args[2] : null);
+        } else if (args.length >= 2 && args.length <= 3 && !args[0].startsWith("-")) {
+            queue(tx, targets, "update", args[0], args[1], args.length == 3 ? args[2] : null);
+        } else {
+            throw new RuntimeException("usage: jit update-ref <ref> <new> [<old>] | -d <ref> [<old>] | --stdin");
+        }
+        ObjectStore store = new ObjectStore(repo);
+        for (ObjectId id : targets)
+            if (!store.contains(id))
+                throw new RuntimeException("object not found: " + id);
+        tx.commit();
+    }
+
+    private void readStdin(RefTransaction tx, Set<ObjectId> targets) {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                String[] p = line.trim().split(" ");
+                switch (p[0]) {
+                    case "create":
+                    case "update":
+                        if (p.length < 3 || p.length > (p[0].equals("create") ? 3 : 4))
+                            throw new RuntimeException("invalid update-ref line: " + line);
+                        queue(tx, targets, p[0], p[1], p[2], p.length == 4 ? p[3] : null);
+                        break;
+                    case "delete":
+                    case "verify":
+                        if (p.length < 2 || p.length > 3)
+                            throw new RuntimeException("invalid update-ref line: " + line);
+                        queue(tx, targets, p[0], p[1], null, p.length == 3 ? p[2] : null);
+                        break;
+                    default:
+                        throw new RuntimeException("invalid update-ref line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("failed to read stdin");
+        }
+    }
+
+    private void queue(RefTransaction tx, Set<ObjectId> targets, String kind, String ref, String newValue,
+            String oldValue) {
+        ObjectId id = newValue == null || newValue.equals(ZERO) ? null : ObjectId.fromHex(newValue);
+        ObjectId old = oldValue == null || oldValue.equals(ZERO) ? null : ObjectId.fromHex(oldValue);
+        switch (kind) {
+            case "create":
+                if (id == null)
+                    throw new RuntimeException("create needs a new value: " + ref);
+                tx.create(ref, id);
+                break;
+            case "update":
+                if (id == null) {
+                    if (oldValue == null)
+                        tx.delete(ref);
+                    else if (old == null)
+                        throw new RuntimeException("cannot delete " + ref + " expecting no value");
+                    else
+                        tx.delete(ref, old);
+                } else if (oldValue == null) {
+                    tx.update(ref, id);
+                } else {
+                    tx.update(ref, id, old);
+                }
+                break;
+            case "delete":
+                if (oldValue != null && old == null)
+                    throw new RuntimeException("cannot delete " + ref + " expecting no value");
+                if (old == null)
+                    tx.delete(ref);
+                else
+                    tx.delete(ref, old);
+                break;
+            default:
+                tx.verify(ref, old);
+                break;
+        }
+        if (id != null)
+            targets.add(id);
+    }
+}
@@ -0,0 +1,133 @@
+package com.jit.fsmonitor;
+
+import com.jit.index.Ignore;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class FsMonitor {
+    static final String STATE_MAGIC = "jit-fsmonitor 1";
+    private static final long SYNC_TIMEOUT_MS = 1000;
+
+    public static class Changes {
+        public final String token;
+        public final Set<String> paths;
+
+        Changes(String token, Set<String> paths) {
+            this.token = token;
+            this.paths = paths;
+        }
+
+        public boolean isComplete() {
+            return paths != null;
+        }
+    }
+
+    public static Path stateFile(Repository repo) {
+        return repo.fsmonitorDir().resolve("state");
+    }
+
+    public static boolean isRunning(Repository repo) {
+        return readPid(repo) > 0;
+    }
+
+    public static long readPid(Repository repo) {
+        List<String> lines = readState(repo);
+        if (lines == null || lines.size() < 2 || !lines.get(1).startsWith("pid "))
+            return -1;
+        long pid = Long.parseLong(lines.get(1).substring(4));
+        Optional<ProcessHandle> ph = ProcessHandle.of(pid);
+        return ph.isPresent() && ph.get().isAlive() ? pid : -1;
+    }
+
+    public static Changes query(Repository repo, String since) {
+        if (!isRunning(repo))
+            return null;
+        List<String> lines = sync(repo);
+        if (lines == null)
+            return null;
+        String token = lines.get(2).substring(6);
+        if (since == null)
+            return new Changes(token, null);
+        int colon = since.lastIndexOf(':');
+        int curColon = token.lastIndexOf(':');
+        if (colon < 0 || !since.substring(0, colon).equals(token.substring(0, curColon)))
+            return new Changes(token, null);
+        long sinceSeq = Long.parseLong(since.substring(colon + 1));
+        Set<String> paths = new HashSet<>();
+        for (int i = 3; i < lines.size(); i++) {
+            String l = lines.get(i);
+            if (l.startsWith("cookie "))
+                continue;
+            int tab = l.indexOf('\t');
+            if (tab > 0 && Long.parseLong(l.substring(0, tab)) > sinceSeq)
+                paths.add(l.substring(tab + 1));
+        }
+        return new Changes(token, paths);
+    }
+
+    public static Set<String> changedCandidates(Repository repo, byte[] indexChecksum) {
+        StatusSnapshot snap = StatusSnapshot.read(repo);
+        if (snap == null || !snap.matches(indexChecksum, Ignore.digest(repo.getWorkTree())))
+            return null;
+        Changes changes = query(repo, snap.token);
+        if (changes == null || !changes.isComplete())
+            return null;
+        Set<String> out = new HashSet<>(changes.paths);
+        out.addAll(snap.modified);
+        out.addAll(snap.untracked);
+        return out;
+    }
+
+    static String relative(Path root, Path p) {
+        return root.relativize(p).toString().replace('\\', '/');
+    }
+
+    private static List<String> sync(Repository repo) {
+        Path cookie = repo.fsmonitorDir().resolve("cookies")
+                .resolve("c-" + ProcessHandle.current().pid() + "-" + System.nanoTime());
+        String marker = "cookie " + cookie.getFileName();
+        try {
+            Files.createFile(cookie);
+            long deadline = System.currentTimeMillis() + SYNC_TIMEOUT_MS;
+            while (System.currentTimeMillis() < deadline) {
+                List<String> lines = readState(repo);
+                if (lines != null && lines.contains(marker))
+                    return lines;
+                Thread.sleep(2);
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            try {
+                Files.deleteIfExists(cookie);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static List<String> readState(Repository repo) {
+        Path p = stateFile(repo);
+        try {
+            if (!Files.exists(p))
+                return null;
+            List<String> lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !lines.get(0).equals(STATE_MAGIC) || !lines.get(2).startsWith("token "))
+                return null;
+            return lines;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.jit.fsmonitor;
+
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class FsMonitorDaemon {
+    private static final int MAX_COOKIES = 32;
+    private static final int MAX_DIRTY = 50_000;
+
+    private final Repository repo;
+    private final Path root;
+    private final Path cookiesDir;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<String, Long> dirty = new HashMap<>();
+    private final Deque<String> cookies = new ArrayDeque<>();
+    private WatchService watcher;
+    private String session;
+    private long seq;
+
+    public FsMonitorDaemon(Repository repo) {
+        this.repo = repo;
+        this.root = repo.getWorkTree();
+        this.cookiesDir = repo.fsmonitorDir().resolve("cookies");
+    }
+
+    public void run() {
+        try {
+            Files.createDirectories(cookiesDir);
+            watcher = FileSystems.getDefault().newWatchService();
+            registerAll(root);
+            keys.put(cookiesDir.register(watcher, ENTRY_CREATE), cookiesDir);
+        } catch (IOException e) {
+            throw new RuntimeException("fsmonitor failed to start");
+        }
+        newSession();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(FsMonitor.stateFile(repo));
+            } catch (IOException ignored) {
+            }
+        }));
+        flush();
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            while (key != null) {
+                process(key);
+                key = watcher.poll();
+            }
+            flush();
+        }
+    }
+
+    private void process(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == OVERFLOW) {
+                newSession();
+                continue;
+            }
+            if (dir == null)
+                continue;
+            Path child = dir.resolve((Path) ev.context());
+            if (dir.equals(cookiesDir)) {
+                cookies.addLast(child.getFileName().toString());
+                if (cookies.size() > MAX_COOKIES)
+                    cookies.removeFirst();
+                continue;
+            }
+            if (child.startsWith(repo.getJitDir()))
+                continue;
+            dirty.put(FsMonitor.relative(root, child), ++seq);
+            if (dirty.size() > MAX_DIRTY)
+                newSession();
+            if (ev.kind() == ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerAll(child);
+                } catch (IOException e) {
+                    newSession();
+                }
+            }
+        }
+        if (!key.reset())
+            keys.remove(key);
+    }
+
+    private void newSession() {
+        session = UUID.randomUUID().toString();
+        seq = 0;
+        dirty.clear();
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(repo.getJitDir()))
+                    return FileVisitResult.SKIP_SUBTREE;
+                keys.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void flush() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(FsMonitor.STATE_MAGIC).append("\n");
+        sb.append("pid ").append(ProcessHandle.current().pid()).append("\n");
+        sb.append("token ").append(session).append(":").append(seq).append("\n");
+        for (String c : cookies)
+            sb.append("cookie ").append(c).append("\n");
+        for (var e : dirty.entrySet())
+            sb.append(e.getValue()).append("\t").append(e.getKey()).append("\n");
+        try {
+            Path tmp = Files.createTempFile(repo.fsmonitorDir(), "state", ".tmp");
+            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, FsMonitor.stateFile(repo), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("fsmonitor state write failed");
+        }
+    }
+}
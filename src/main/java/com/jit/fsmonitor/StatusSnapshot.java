@@ -0,0 +1,93 @@
+package com.jit.fsmonitor;
+
+import com.jit.objects.Hasher;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class StatusSnapshot {
+    private static final String MAGIC = "jit-status-snapshot 2";
+
+    public final String token;
+    public final String index;
+    public final String ignore;
+    public final List<String> modified;
+    public final List<String> untracked;
+
+    public StatusSnapshot(String token, byte[] indexChecksum, String ignore, Collection<String> modified,
+            Collection<String> untracked) {
+        this.token = token;
+        this.index = checksumHex(indexChecksum);
+        this.ignore = ignore;
+        this.modified = new ArrayList<>(modified);
+        this.untracked = new ArrayList<>(untracked);
+    }
+
+    private StatusSnapshot(String token, String index, String ignore, List<String> modified,
+            List<String> untracked) {
+        this.token = token;
+        this.index = index;
+        this.ignore = ignore;
+        this.modified = modified;
+        this.untracked = untracked;
+    }
+
+    public boolean matches(byte[] indexChecksum, String ignoreDigest) {
+        return index.equals(checksumHex(indexChecksum)) && ignore.equals(ignoreDigest);
+    }
+
+    public static StatusSnapshot read(Repository repo) {
+        Path p = file(repo);
+        if (!Files.exists(p))
+            return null;
+        try {
+            List<String> lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+            if (lines.size() < 4 || !lines.get(0).equals(MAGIC))
+                return null;
+            List<String> modified = new ArrayList<>();
+            List<String> untracked = new ArrayList<>();
+            for (int i = 4; i < lines.size(); i++) {
+                String l = lines.get(i);
+                if (l.startsWith("M\t"))
+                    modified.add(l.substring(2));
+                else if (l.startsWith("?\t"))
+                    untracked.add(l.substring(2));
+            }
+            return new StatusSnapshot(lines.get(1), lines.get(2), lines.get(3), modified, untracked);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void write(Repository repo) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(MAGIC).append("\n").append(token).append("\n").append(index).append("\n").append(ignore).append("\n");
+        for (String m : modified)
+            sb.append("M\t").append(m).append("\n");
+        for (String u : untracked)
+            sb.append("?\t").append(u).append("\n");
+        try {
+            Files.createDirectories(repo.fsmonitorDir());
+            Path tmp = Files.createTempFile(repo.fsmonitorDir(), "snapshot", ".tmp");
+            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, file(repo), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("status snapshot write failed");
+        }
+    }
+
+    private static Path file(Repository repo) {
+        return repo.fsmonitorDir().resolve("snapshot");
+    }
+
+    private static String checksumHex(byte[] checksum) {
+        return checksum == null ? "none" : Hasher.toHex(checksum);
+    }
+}
@@ -0,0 +1,92 @@
+package com.jit.index;
+
+import com.jit.objects.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class CacheTree {
+    static final byte[] SIGNATURE = { 'T', 'R', 'E', 'E' };
+
+    private final Map<String, Node> dirs = new HashMap<>();
+    private boolean changed;
+
+    private static class Node {
+        final ObjectId hash;
+        final int count;
+
+        Node(ObjectId hash, int count) {
+            this.hash = hash;
+            this.count = count;
+        }
+    }
+
+    public ObjectId get(String dir, int count) {
+        Node n = dirs.get(dir);
+        return n != null && n.count == count ? n.hash : null;
+    }
+
+    public void put(String dir, ObjectId hash, int count) {
+        Node old = dirs.put(dir, new Node(hash, count));
+        if (old == null || old.count != count || !old.hash.equals(hash))
+            changed = true;
+    }
+
+    public void invalidate(String path) {
+        if (dirs.remove("") != null)
+            changed = true;
+        for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1))
+            if (dirs.remove(path.substring(0, slash)) != null)
+                changed = true;
+    }
+
+    public void clear() {
+        if (!dirs.isEmpty())
+            changed = true;
+        dirs.clear();
+    }
+
+    public int size() {
+        return dirs.size();
+    }
+
+    public boolean isChanged() {
+        return changed;
+    }
+
+    void saved() {
+        changed = false;
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (var e : new TreeMap<>(dirs).entrySet()) {
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer rec = ByteBuffer.allocate(2 + name.length + 4 + 20);
+            rec.putShort((short) name.length).put(name).putInt(e.getValue().count);
+            e.getValue().hash.copyRawTo(rec);
+            out.writeBytes(rec.array());
+        }
+        return out.toByteArray();
+    }
+
+    static CacheTree decode(ByteBuffer buf, int off, int len) {
+        CacheTree t = new CacheTree();
+        int end = off + len;
+        while (off + 2 <= end) {
+            int n = buf.getShort(off) & 0xffff;
+            if (off + 2 + n + 24 > end)
+                throw new RuntimeException("corrupt index");
+            byte[] name = new byte[n];
+            buf.get(off + 2, name);
+            int count = buf.getInt(off + 2 + n);
+            t.dirs.put(new String(name, StandardCharsets.UTF_8), new Node(ObjectId.fromRaw(buf, off + 6 + n), count));
+            off += 2 + n + 24;
+        }
+        return t;
+    }
+}
@@ -0,0 +1,113 @@
+package com.jit.index;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class CheckoutWriter {
+    private static final int PARALLEL_MIN_FILES = 64;
+    private static final int QUEUED_PER_JOB = 4;
+
+    private final Repository repo;
+    private final ObjectStore store;
+    private final int jobs;
+
+    public CheckoutWriter(Repository repo, ObjectStore store, int jobs) {
+        this.repo = repo;
+        this.store = store;
+        this.jobs = jobs;
+    }
+
+    public List<Index.Entry> write(Map<String, ObjectId> files) {
+        createDirectories(files.keySet());
+        List<Map.Entry<String, ObjectId>> todo = new ArrayList<>(files.entrySet());
+        if (jobs <= 1 || todo.size() < PARALLEL_MIN_FILES) {
+            List<Index.Entry> out = new ArrayList<>(todo.size());
+            for (Map.Entry<String, ObjectId> f : todo)
+                out.add(writeFile(f.getKey(), f.getValue()));
+            return out;
+        }
+        return writeParallel(todo);
+    }
+
+    private List<Index.Entry> writeParallel(List<Map.Entry<String, ObjectId>> todo) {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs, r -> {
+            Thread t = new Thread(r, "jit-checkout");
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore slots = new Semaphore(jobs * QUEUED_PER_JOB);
+        List<Future<Index.Entry>> futures = new ArrayList<>(todo.size());
+        try {
+            for (Map.Entry<String, ObjectId> f : todo) {
+                slots.acquireUninterruptibly();
+                futures.add(pool.submit(() -> {
+                    try {
+                        return writeFile(f.getKey(), f.getValue());
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            List<Index.Entry> out = new ArrayList<>(todo.size());
+            for (Future<Index.Entry> fu : futures)
+                out.add(fu.get());
+            return out;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException("checkout failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("checkout interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void createDirectories(Collection<String> paths) {
+        Path root = repo.getWorkTree();
+        Set<Path> dirs = new TreeSet<>();
+        for (String p : paths) {
+            Path parent = root.resolve(p).getParent();
+            if (parent != null && !parent.equals(root))
+                dirs.add(parent);
+        }
+        try {
+            for (Path d : dirs)
+                Files.createDirectories(d);
+        } catch (IOException e) {
+            throw new RuntimeException("checkout failed");
+        }
+    }
+
+    private Index.Entry writeFile(String path, ObjectId blob) {
+        Path abs = repo.getWorkTree().resolve(path);
+        try {
+            try (ObjectStore.ObjectStream bo = store.openObject(blob);
+                    OutputStream out = Files.newOutputStream(abs, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (!bo.type.equals("blob"))
+                    throw new RuntimeException("tree entry not blob");
+                bo.copyTo(out);
+            }
+            BasicFileAttributes attrs = Files.readAttributes(abs, BasicFileAttributes.class);
+            return new Index.Entry(path, blob, 0100644, attrs.lastModifiedTime().toMillis(), attrs.size());
+        } catch (IOException e) {
+            throw new RuntimeException("checkout failed: " + path);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.jit.index;
+
+import com.jit.objects.Hasher;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Ignore {
+    public static final String FILE = ".jitignore";
+
+    public static List<String> read(Path root) {
+        Path p = root.resolve(FILE);
+        if (!Files.exists(p))
+            return List.of();
+        try {
+            List<String> lines = Files.readAllLines(p);
+            List<String> out = new ArrayList<>();
+            for (String l : lines) {
+                String t = l.trim();
+                if (!t.isEmpty())
+                    out.add(t);
+            }
+            return out;
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    public static String digest(Path root) {
+        try {
+            return Hasher.toHex(Hasher.sha1(Files.readAllBytes(root.resolve(FILE))));
+        } catch (IOException e) {
+            return "none";
+        }
+    }
+
+    public static boolean isIgnored(List<String> globs, String rel) {
+        for (String g : globs) {
+            if (globMatch(g, rel))
+                return true;
+        }
+        return rel.startsWith(Repository.JIT_DIR + "/");
+    }
+
+    private static boolean globMatch(String pattern, String path) {
+        String p = pattern;
+        if (!p.contains("*"))
+            return p.equals(path);
+        String[] parts = p.split("\\*", -1);
+        int pos = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (i == 0) {
+                if (!path.startsWith(part))
+                    return false;
+                pos = part.length();
+            } else if (i == parts.length - 1) {
+                if (!path.substring(pos).endsWith(part))
+                    return false;
+            } else {
+                int idx = path.indexOf(part, pos);
+                if (idx < 0)
+                    return false;
+                pos = idx + part.length();
+            }
+        }
+        return true;
+    }
+}
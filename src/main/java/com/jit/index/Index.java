@@ -1,40 +1,63 @@
 package com.jit.index;
 
 import com.jit.objects.Blob;
+import com.jit.objects.ObjectId;
 import com.jit.objects.ObjectStore;
+import com.jit.repo.LockFile;
 import com.jit.repo.Repository;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 public class Index {
     public static class Entry {
         public final String path;
-        public final String blob;
+        public final ObjectId id;
         public final int mode;
         public final long mtime;
         public final long size;
 
-        public Entry(String path, String blob, int mode, long mtime, long size) {
+        public Entry(String path, ObjectId id, int mode, long mtime, long size) {
             this.path = path;
-            this.blob = blob;
+            this.id = id;
             this.mode = mode;
             this.mtime = mtime;
             this.size = size;
         }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && mtime == attrs.lastModifiedTime().toMillis();
+        }
     }
 
+    static final long RACY_MS = 2000;
+    private static final long IN_MEMORY_LIMIT = 1024 * 1024;
+    private static final int IN_FLIGHT_KB = 64 * 1024;
+    private static final int PARALLEL_MIN_FILES = 64;
+
     private final Repository repo;
     private final ObjectStore store;
-    private final Map<String, Entry> entries = new HashMap<>();
+    private IndexFile file;
+    private Map<String, Entry> entries;
+    private byte[] checksum;
+    private CacheTree cacheTree;
+    private long written = Long.MIN_VALUE;
+    private boolean refreshed;
+    private final Map<String, Entry> changes = new LinkedHashMap<>();
+    private final Map<String, Entry> refreshes = new HashMap<>();
 
     public Index(Repository repo, ObjectStore store) {
         this.repo = repo;
@@ -44,8 +67,15 @@ public class Index {
 
     private void load() {
         Path idx = repo.indexFile();
-        if (!Files.exists(idx))
+        written = lastModified(idx);
+        if (!Files.exists(idx) || IndexFile.isBinary(idx)) {
+            if (Files.exists(idx)) {
+                file = IndexFile.open(idx);
+                checksum = file.checksum();
+            }
             return;
+        }
+        entries = new HashMap<>();
         try {
             List<String> lines = Files.readAllLines(idx, StandardCharsets.UTF_8);
             for (String l : lines) {
@@ -54,39 +84,245 @@ public class Index {
                 String[] p = l.split("\t");
                 if (p.length != 5)
                     continue;
-                entries.put(p[0],
-                        new Entry(p[0], p[1], Integer.parseInt(p[2]), Long.parseLong(p[3]), Long.parseLong(p[4])));
+                entries.put(p[0], new Entry(p[0], ObjectId.fromHex(p[1]), Integer.parseInt(p[2]),
+                        Long.parseLong(p[3]), Long.parseLong(p[4])));
             }
         } catch (IOException e) {
             throw new RuntimeException("index read failed");
         }
     }
 
-    private void save() {
-        Path idx = repo.indexFile();
-        List<String> lines = entries.values().stream()
-                .sorted(Comparator.comparing(e -> e.path))
-                .map(e -> String.join("\t", e.path, e.blob, Integer.toString(e.mode), Long.toString(e.mtime),
-                        Long.toString(e.size)))
-                .collect(Collectors.toList());
+    public void save() {
+        try (LockFile lock = LockFile.acquire(repo.indexFile())) {
+            write(lock);
+        }
+    }
+
+    public boolean trySave() {
+        LockFile lock = LockFile.tryAcquire(repo.indexFile());
+        if (lock == null)
+            return false;
+        try (lock) {
+            write(lock);
+        }
+        return true;
+    }
+
+    private void write(LockFile lock) {
+        if (!Arrays.equals(checksum, IndexFile.readChecksum(repo.indexFile())))
+            rebase();
+        long now = System.currentTimeMillis();
+        Map<String, Entry> map = materialized();
+        for (Map.Entry<String, Entry> me : map.entrySet()) {
+            Entry e = me.getValue();
+            if (e.size >= 0 && e.mtime >= now - RACY_MS)
+                me.setValue(new Entry(e.path, e.id, e.mode, e.mtime, -1));
+        }
+        checksum = IndexFile.write(lock, map.values(), cacheTree());
+        cacheTree.saved();
+        file = null;
+        written = lastModified(repo.indexFile());
+        refreshed = false;
+        changes.clear();
+        refreshes.clear();
+    }
+
+    private void rebase() {
+        file = null;
+        entries = null;
+        checksum = null;
+        cacheTree = null;
+        load();
+        for (Map.Entry<String, Entry> c : changes.entrySet()) {
+            Entry old = c.getValue() == null ? materialized().remove(c.getKey())
+                    : materialized().put(c.getKey(), c.getValue());
+            if (c.getValue() == null ? old != null : old == null || !old.id.equals(c.getValue().id))
+                cacheTree().invalidate(c.getKey());
+        }
+        for (Entry r : refreshes.values()) {
+            Entry cur = materialized().get(r.path);
+            if (cur != null && cur.id.equals(r.id) && cur.mode == r.mode)
+                materialized().put(r.path, r);
+        }
+    }
+
+    public boolean isUpToDate(Entry e, BasicFileAttributes attrs) {
+        return e.matches(attrs) && e.mtime < written - RACY_MS;
+    }
+
+    public void put(Entry e) {
+        changes.put(e.path, e);
+        refreshes.remove(e.path);
+        Entry old = materialized().put(e.path, e);
+        if (old == null || !old.id.equals(e.id))
+            cacheTree().invalidate(e.path);
+    }
+
+    public void remove(String path) {
+        changes.put(path, null);
+        refreshes.remove(path);
+        if (materialized().remove(path) != null)
+            cacheTree().invalidate(path);
+    }
+
+    public void refresh(Entry e, BasicFileAttributes attrs) {
+        Entry r = new Entry(e.path, e.id, e.mode, attrs.lastModifiedTime().toMillis(), attrs.size());
+        materialized().put(e.path, r);
+        refreshes.put(e.path, r);
+        refreshed = true;
+    }
+
+    public boolean isRefreshed() {
+        return refreshed;
+    }
+
+    private static long lastModified(Path p) {
         try {
-            Files.write(idx, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            return Files.getLastModifiedTime(p).toMillis();
         } catch (IOException e) {
-            throw new RuntimeException("index write failed");
+            return Long.MIN_VALUE;
         }
     }
 
+    public CacheTree cacheTree() {
+        if (cacheTree == null)
+            cacheTree = file != null ? file.cacheTree() : new CacheTree();
+        return cacheTree;
+    }
+
     public Map<String, Entry> entries() {
-        return Collections.unmodifiableMap(entries);
+        return Collections.unmodifiableMap(materialized());
+    }
+
+    public Entry get(String path) {
+        if (entries != null)
+            return entries.get(path);
+        if (file == null)
+            return null;
+        int i = file.find(path);
+        return i < 0 ? null : file.entryAt(i);
+    }
+
+    public int size() {
+        if (entries != null)
+            return entries.size();
+        return file == null ? 0 : file.size();
+    }
+
+    public byte[] checksum() {
+        return checksum == null ? null : checksum.clone();
+    }
+
+    private Map<String, Entry> materialized() {
+        if (entries == null) {
+            int n = file == null ? 0 : file.size();
+            Map<String, Entry> map = new HashMap<>(Math.max(16, n * 4 / 3 + 1));
+            for (int i = 0; i < n; i++) {
+                Entry e = file.entryAt(i);
+                map.put(e.path, e);
+            }
+            entries = map;
+        }
+        return entries;
     }
 
     public void addPaths(List<Path> paths, List<String> ignoreGlobs) {
-        for (Path p : paths)
-            addPath(p, ignoreGlobs);
+        addPaths(paths, ignoreGlobs, 1);
+    }
+
+    public void addPaths(List<Path> paths, List<String> ignoreGlobs, int jobs) {
+        addPaths(paths, ignoreGlobs, jobs, null);
+    }
+
+    public void addPaths(List<Path> paths, List<String> ignoreGlobs, int jobs, Set<String> changed) {
+        List<Pending> files = new ArrayList<>();
+        for (Path p : paths) {
+            if (changed != null && Files.isDirectory(repo.getWorkTree().resolve(p)))
+                addChanged(p, ignoreGlobs, changed, files);
+            else
+                addPath(p, ignoreGlobs, files);
+        }
+        List<Entry> staged = jobs <= 1 || files.size() < PARALLEL_MIN_FILES ? stageSerial(files)
+                : stageParallel(files, jobs);
+        for (Entry e : staged)
+            put(e);
         save();
     }
 
-    private void addPath(Path path, List<String> ignoreGlobs) {
+    private List<Entry> stageSerial(List<Pending> files) {
+        List<Entry> out = new ArrayList<>(files.size());
+        for (Pending f : files)
+            out.add(stageFile(f));
+        return out;
+    }
+
+    private List<Entry> stageParallel(List<Pending> files, int jobs) {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs, r -> {
+            Thread t = new Thread(r, "jit-add");
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore budget = new Semaphore(IN_FLIGHT_KB);
+        List<Future<Entry>> futures = new ArrayList<>(files.size());
+        try {
+            for (Pending f : files) {
+                int permits = (int) Math.max(1, Math.min(IN_FLIGHT_KB, (f.size + 1023) / 1024));
+                budget.acquireUninterruptibly(permits);
+                futures.add(pool.submit(() -> {
+                    try {
+                        return stageFile(f);
+                    } finally {
+                        budget.release(permits);
+                    }
+                }));
+            }
+            List<Entry> out = new ArrayList<>(files.size());
+            for (Future<Entry> fu : futures)
+                out.add(fu.get());
+            return out;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException("add failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("add interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void addChanged(Path dir, List<String> ignoreGlobs, Set<String> changed, List<Pending> out) {
+        Path root = repo.getWorkTree();
+        Path abs = root.resolve(dir).normalize();
+        if (!abs.startsWith(root))
+            throw new RuntimeException("path outside repo");
+        String prefix = root.equals(abs) ? "" : root.relativize(abs).toString() + "/";
+        List<String> sorted = new ArrayList<>(changed);
+        Collections.sort(sorted);
+        String walked = null;
+        for (String rel : sorted) {
+            if (!rel.startsWith(prefix) || (walked != null && rel.startsWith(walked))
+                    || ignoredWithParents(rel, ignoreGlobs))
+                continue;
+            Path p = root.resolve(rel);
+            if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                addPath(Paths.get(rel), ignoreGlobs, out);
+                walked = rel + "/";
+            } else if (Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)) {
+                addPath(Paths.get(rel), ignoreGlobs, out);
+            }
+        }
+    }
+
+    private boolean ignoredWithParents(String rel, List<String> globs) {
+        for (int slash = rel.indexOf('/'); slash >= 0; slash = rel.indexOf('/', slash + 1))
+            if (shouldIgnore(rel.substring(0, slash), globs))
+                return true;
+        return shouldIgnore(rel, globs);
+    }
+
+    private void addPath(Path path, List<String> ignoreGlobs, List<Pending> out) {
         Path root = repo.getWorkTree();
         Path abs = root.resolve(path).normalize();
         if (!abs.startsWith(root))
@@ -110,7 +346,7 @@ public class Index {
                     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                         String rel = root.relativize(file).toString();
                         if (!shouldIgnore(rel, ignoreGlobs))
-                            stageFile(file, rel, attrs);
+                            out.add(new Pending(file, rel, attrs));
                         return FileVisitResult.CONTINUE;
                     }
                 });
@@ -118,7 +354,7 @@ public class Index {
                 BasicFileAttributes attrs = Files.readAttributes(abs, BasicFileAttributes.class);
                 String rel = root.relativize(abs).toString();
                 if (!shouldIgnore(rel, ignoreGlobs))
-                    stageFile(abs, rel, attrs);
+                    out.add(new Pending(abs, rel, attrs));
             }
         } catch (IOException e) {
             throw new RuntimeException("add failed");
@@ -126,44 +362,34 @@ public class Index {
     }
 
     private boolean shouldIgnore(String rel, List<String> globs) {
-        for (String g : globs) {
-            if (globMatch(g, rel))
-                return true;
-        }
-        return rel.startsWith(Repository.JIT_DIR + "/");
-    }
-
-    private boolean globMatch(String pattern, String path) {
-        String p = pattern;
-        if (!p.contains("*"))
-            return p.equals(path);
-        String[] parts = p.split("\\*", -1);
-        int pos = 0;
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            if (i == 0) {
-                if (!path.startsWith(part))
-                    return false;
-                pos = part.length();
-            } else if (i == parts.length - 1) {
-                if (!path.substring(pos).endsWith(part))
-                    return false;
-            } else {
-                int idx = path.indexOf(part, pos);
-                if (idx < 0)
-                    return false;
-                pos = idx + part.length();
+        return Ignore.isIgnored(globs, rel);
+    }
+
+    private Entry stageFile(Pending f) {
+        ObjectId blob;
+        if (f.size <= IN_MEMORY_LIMIT) {
+            try {
+                blob = Blob.store(store, Files.readAllBytes(f.file));
+            } catch (IOException e) {
+                throw new RuntimeException("add failed: " + f.rel);
             }
+        } else {
+            blob = Blob.store(store, f.file);
         }
-        return true;
+        return new Entry(f.rel, blob, 0100644, f.mtime, f.size);
     }
 
-    private void stageFile(Path file, String rel, BasicFileAttributes attrs) throws IOException {
-        byte[] bytes = Files.readAllBytes(file);
-        String blob = Blob.store(store, bytes);
-        int mode = 0100644;
-        long mtime = attrs.lastModifiedTime().toMillis();
-        long size = attrs.size();
-        entries.put(rel, new Entry(rel, blob, mode, mtime, size));
+    private static class Pending {
+        final Path file;
+        final String rel;
+        final long mtime;
+        final long size;
+
+        Pending(Path file, String rel, BasicFileAttributes attrs) {
+            this.file = file;
+            this.rel = rel;
+            this.mtime = attrs.lastModifiedTime().toMillis();
+            this.size = attrs.size();
+        }
     }
 }
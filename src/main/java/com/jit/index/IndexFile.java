@@ -0,0 +1,212 @@
+package com.jit.index;
+
+import com.jit.objects.Hasher;
+import com.jit.objects.ObjectId;
+import com.jit.repo.LockFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+class IndexFile {
+    static final byte[] MAGIC = { 'J', 'I', 'D', 'X' };
+    static final int VERSION = 2;
+
+    private static final int HEADER = 12;
+    private static final int FIXED = 8 + 8 + 4 + 20 + 2;
+    private static final int CHECKSUM = 20;
+
+    private final ByteBuffer buf;
+    private final int[] offsets;
+    private final byte[] checksum;
+    private final int extensions;
+
+    private IndexFile(ByteBuffer buf, int[] offsets, byte[] checksum, int extensions) {
+        this.buf = buf;
+        this.offsets = offsets;
+        this.checksum = checksum;
+        this.extensions = extensions;
+    }
+
+    static boolean isBinary(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            ch.read(head, 0);
+            return Arrays.equals(head.array(), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static IndexFile open(Path file) {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE)
+                throw new RuntimeException("index too large");
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw new RuntimeException("index read failed");
+        }
+        int len = buf.limit();
+        if (len < HEADER + CHECKSUM)
+            throw new RuntimeException("corrupt index");
+        byte[] magic = new byte[4];
+        buf.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new RuntimeException("corrupt index");
+        if (buf.getInt(4) != VERSION)
+            throw new RuntimeException("unsupported index version " + buf.getInt(4));
+        MessageDigest md = Hasher.sha1();
+        md.update(buf.duplicate().limit(len - CHECKSUM));
+        byte[] expected = md.digest();
+        byte[] actual = new byte[CHECKSUM];
+        buf.get(len - CHECKSUM, actual);
+        if (!Arrays.equals(expected, actual))
+            throw new RuntimeException("index checksum mismatch");
+        int count = buf.getInt(8);
+        int[] offsets = new int[count];
+        int off = HEADER;
+        for (int i = 0; i < count; i++) {
+            if (off + FIXED > len - CHECKSUM)
+                throw new RuntimeException("corrupt index");
+            offsets[i] = off;
+            off += FIXED + (buf.getShort(off + FIXED - 2) & 0xffff);
+        }
+        return new IndexFile(buf, offsets, actual, off);
+    }
+
+    int size() {
+        return offsets.length;
+    }
+
+    byte[] checksum() {
+        return checksum.clone();
+    }
+
+    Index.Entry entryAt(int i) {
+        int off = offsets[i];
+        long mtime = buf.getLong(off);
+        long size = buf.getLong(off + 8);
+        int mode = buf.getInt(off + 16);
+        return new Index.Entry(pathAt(i), ObjectId.fromRaw(buf, off + 20), mode, mtime, size);
+    }
+
+    String pathAt(int i) {
+        int off = offsets[i];
+        int n = buf.getShort(off + FIXED - 2) & 0xffff;
+        byte[] name = new byte[n];
+        buf.get(off + FIXED, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    CacheTree cacheTree() {
+        int end = buf.limit() - CHECKSUM;
+        int off = extensions;
+        while (off + 8 <= end) {
+            byte[] sig = new byte[4];
+            buf.get(off, sig);
+            int len = buf.getInt(off + 4);
+            if (len < 0 || off + 8 + len > end)
+                throw new RuntimeException("corrupt index");
+            if (Arrays.equals(sig, CacheTree.SIGNATURE))
+                return CacheTree.decode(buf, off + 8, len);
+            off += 8 + len;
+        }
+        return new CacheTree();
+    }
+
+    int find(String path) {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = offsets.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparePath(mid, key);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private int comparePath(int i, byte[] key) {
+        int off = offsets[i];
+        int n = buf.getShort(off + FIXED - 2) & 0xffff;
+        int base = off + FIXED;
+        int m = Math.min(n, key.length);
+        for (int k = 0; k < m; k++) {
+            int a = buf.get(base + k) & 0xff;
+            int b = key[k] & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return n - key.length;
+    }
+
+    static byte[] readChecksum(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer head = ByteBuffer.allocate(4);
+            ch.read(head, 0);
+            if (size < HEADER + CHECKSUM || !Arrays.equals(head.array(), MAGIC))
+                return null;
+            ByteBuffer sum = ByteBuffer.allocate(CHECKSUM);
+            ch.read(sum, size - CHECKSUM);
+            return sum.hasRemaining() ? null : sum.array();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static byte[] write(LockFile lock, Collection<Index.Entry> entries, CacheTree tree) {
+        List<Named> sorted = new ArrayList<>(entries.size());
+        byte[] treeExt = tree.encode();
+        int total = HEADER + CHECKSUM + (treeExt.length > 0 ? 8 + treeExt.length : 0);
+        for (Index.Entry e : entries) {
+            byte[] name = e.path.getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xffff)
+                throw new RuntimeException("path too long: " + e.path);
+            sorted.add(new Named(name, e));
+            total += FIXED + name.length;
+        }
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.name, b.name));
+        ByteBuffer out = ByteBuffer.allocate(total);
+        out.put(MAGIC).putInt(VERSION).putInt(sorted.size());
+        for (Named s : sorted) {
+            Index.Entry e = s.entry;
+            out.putLong(e.mtime).putLong(e.size).putInt(e.mode);
+            e.id.copyRawTo(out);
+            out.putShort((short) s.name.length).put(s.name);
+        }
+        if (treeExt.length > 0)
+            out.put(CacheTree.SIGNATURE).putInt(treeExt.length).put(treeExt);
+        MessageDigest md = Hasher.sha1();
+        md.update(out.array(), 0, out.position());
+        byte[] sum = md.digest();
+        out.put(sum);
+        lock.write(out.array());
+        lock.commit();
+        return sum;
+    }
+
+    private static class Named {
+        final byte[] name;
+        final Index.Entry entry;
+
+        Named(byte[] name, Index.Entry entry) {
+            this.name = name;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.jit.index;
+
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+public class UntrackedCache {
+    private static final String MAGIC = "jit-untracked 2";
+
+    private final Repository repo;
+    private final String key;
+    private Map<String, Dir> dirs;
+    private int hits;
+    private int misses;
+
+    private static class Dir {
+        final long mtime;
+        final List<String> files;
+        final List<String> subdirs;
+
+        Dir(long mtime, List<String> files, List<String> subdirs) {
+            this.mtime = mtime;
+            this.files = files;
+            this.subdirs = subdirs;
+        }
+    }
+
+    public UntrackedCache(Repository repo) {
+        this.repo = repo;
+        this.key = Ignore.digest(repo.getWorkTree());
+        this.dirs = load();
+    }
+
+    public int hits() {
+        return hits;
+    }
+
+    public int misses() {
+        return misses;
+    }
+
+    public List<String> untracked(Map<String, Index.Entry> index, List<String> ignore) {
+        Path root = repo.getWorkTree();
+        long start = System.currentTimeMillis();
+        Map<String, Dir> next = new HashMap<>();
+        List<String> out = new ArrayList<>();
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push("");
+        try {
+            while (!stack.isEmpty()) {
+                String rel = stack.pop();
+                Path dir = rel.isEmpty() ? root : root.resolve(rel);
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attrs.isDirectory())
+                    continue;
+                long mtime = attrs.lastModifiedTime().toMillis();
+                Dir d = dirs.get(rel);
+                if (d != null && d.mtime == mtime) {
+                    hits++;
+                } else {
+                    d = readDir(rel, dir, mtime, ignore);
+                    misses++;
+                }
+                if (mtime < start - Index.RACY_MS)
+                    next.put(rel, d);
+                for (String name : d.files) {
+                    String p = join(rel, name);
+                    if (!index.containsKey(p))
+                        out.add(p);
+                }
+                for (String name : d.subdirs)
+                    stack.push(join(rel, name));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("status failed");
+        }
+        dirs = next;
+        Collections.sort(out);
+        return out;
+    }
+
+    public void save() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(MAGIC).append("\n").append(key).append("\n");
+        for (var e : new TreeMap<>(dirs).entrySet()) {
+            Dir d = e.getValue();
+            sb.append("D\t").append(d.mtime).append("\t").append(e.getKey()).append("\n");
+            for (String u : d.files)
+                sb.append("F\t").append(u).append("\n");
+            for (String s : d.subdirs)
+                sb.append("S\t").append(s).append("\n");
+        }
+        try {
+            Path tmp = Files.createTempFile(repo.getJitDir(), "untracked", ".tmp");
+            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, file(repo), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("untracked cache write failed");
+        }
+    }
+
+    private Dir readDir(String rel, Path dir, long mtime, List<String> ignore) throws IOException {
+        List<String> files = new ArrayList<>();
+        List<String> subdirs = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path child : ds) {
+                String name = child.getFileName().toString();
+                String childRel = join(rel, name);
+                if (childRel.equals(Repository.JIT_DIR) || Ignore.isIgnored(ignore, childRel))
+                    continue;
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+                    subdirs.add(name);
+                else
+                    files.add(name);
+            }
+        }
+        Collections.sort(files);
+        Collections.sort(subdirs);
+        return new Dir(mtime, files, subdirs);
+    }
+
+    private Map<String, Dir> load() {
+        Map<String, Dir> out = new HashMap<>();
+        Path p = file(repo);
+        if (!Files.exists(p))
+            return out;
+        try {
+            List<String> lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+            if (lines.size() < 2 || !lines.get(0).equals(MAGIC) || !lines.get(1).equals(key))
+                return out;
+            List<String> files = null;
+            List<String> subdirs = null;
+            for (int i = 2; i < lines.size(); i++) {
+                String l = lines.get(i);
+                if (l.startsWith("D\t")) {
+                    int tab = l.indexOf('\t', 2);
+                    files = new ArrayList<>();
+                    subdirs = new ArrayList<>();
+                    out.put(l.substring(tab + 1), new Dir(Long.parseLong(l.substring(2, tab)), files, subdirs));
+                } else if (l.startsWith("F\t") && files != null) {
+                    files.add(l.substring(2));
+                } else if (l.startsWith("S\t") && subdirs != null) {
+                    subdirs.add(l.substring(2));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            out.clear();
+        }
+        return out;
+    }
+
+    private static Path file(Repository repo) {
+        return repo.getJitDir().resolve("untracked");
+    }
+
+    private static String join(String dir, String name) {
+        return dir.isEmpty() ? name : dir + "/" + name;
+    }
+}
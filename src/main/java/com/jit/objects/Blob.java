@@ -1,7 +1,17 @@
 package com.jit.objects;
 
+import java.nio.file.Path;
+
 public class Blob {
-    public static String store(ObjectStore store, byte[] content) {
+    public static ObjectId store(ObjectStore store, byte[] content) {
         return store.writeObject("blob", content);
     }
+
+    public static ObjectId store(ObjectStore store, Path file) {
+        return store.writeObject("blob", file);
+    }
+
+    public static ObjectId hash(Path file) {
+        return ObjectStore.hashObject("blob", file);
+    }
 }
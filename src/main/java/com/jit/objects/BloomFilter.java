@@ -0,0 +1,142 @@
+package com.jit.objects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class BloomFilter {
+    static final byte[] MAGIC = { 'J', 'B', 'L', 'M' };
+    static final int VERSION = 1;
+
+    private static final int HEADER = 4 + 4 + 4 + 8 + 8 + 4;
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+    private final long capacity;
+    private long count;
+
+    public BloomFilter(long capacity, double fpp) {
+        this(words(capacity, fpp), hashCount(capacity, words(capacity, fpp) * 64L), capacity, 0);
+    }
+
+    private BloomFilter(int words, int hashes, long capacity, long count) {
+        this.words = new long[words];
+        this.bits = words * 64L;
+        this.hashes = hashes;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    public synchronized void add(ObjectId id) {
+        long h1 = id.hash1();
+        long h2 = id.hash2() | 1;
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            long mask = 1L << bit;
+            int w = (int) (bit >>> 6);
+            if ((words[w] & mask) == 0) {
+                words[w] |= mask;
+                added = true;
+            }
+        }
+        if (added)
+            count++;
+    }
+
+    public synchronized boolean mightContain(ObjectId id) {
+        long h1 = id.hash1();
+        long h2 = id.hash2() | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long bits() {
+        return bits;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public long memoryBytes() {
+        return words.length * 8L;
+    }
+
+    public synchronized double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashes * count / bits), hashes);
+    }
+
+    public synchronized boolean merge(BloomFilter other) {
+        if (other.words.length != words.length || other.hashes != hashes)
+            return false;
+        long set = 0;
+        synchronized (other) {
+            for (int i = 0; i < words.length; i++) {
+                words[i] |= other.words[i];
+                set += Long.bitCount(words[i]);
+            }
+        }
+        count = set == bits ? Math.max(count, other.count)
+                : Math.round(-(double) bits / hashes * Math.log(1 - (double) set / bits));
+        return true;
+    }
+
+    public synchronized byte[] encode() {
+        ByteBuffer out = ByteBuffer.allocate(HEADER + words.length * 8);
+        out.put(MAGIC).putInt(VERSION).putInt(hashes).putLong(capacity).putLong(count).putInt(words.length);
+        out.asLongBuffer().put(words);
+        return out.array();
+    }
+
+    public static BloomFilter read(Path file) {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("object filter read failed");
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (data.length < HEADER || !Arrays.equals(data, 0, 4, MAGIC, 0, 4))
+            return null;
+        in.position(4);
+        if (in.getInt() != VERSION)
+            return null;
+        int hashes = in.getInt();
+        long capacity = in.getLong();
+        long count = in.getLong();
+        int words = in.getInt();
+        if (hashes < 1 || words < 1 || data.length != HEADER + words * 8L)
+            return null;
+        BloomFilter f = new BloomFilter(words, hashes, capacity, count);
+        in.asLongBuffer().get(f.words);
+        return f;
+    }
+
+    private static int words(long capacity, double fpp) {
+        double m = -Math.max(1, capacity) * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (long) Math.ceil(m / 64)));
+    }
+
+    private static int hashCount(long capacity, long bits) {
+        return (int) Math.max(1, Math.min(30, Math.round((double) bits / Math.max(1, capacity) * Math.log(2))));
+    }
+}
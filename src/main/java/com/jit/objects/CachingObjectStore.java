@@ -0,0 +1,99 @@
+package com.jit.objects;
+
+import com.jit.repo.Repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class CachingObjectStore extends ObjectStore {
+    public static final long DEFAULT_LIMIT = 32L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int ID_COST = 32;
+
+    private final long limit;
+    private final LinkedHashMap<ObjectId, Cached> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    private static class Cached {
+        final Object value;
+        final long cost;
+
+        Cached(Object value, long cost) {
+            this.value = value;
+            this.cost = cost;
+        }
+    }
+
+    public CachingObjectStore(Repository repo) {
+        this(repo, DEFAULT_LIMIT);
+    }
+
+    public CachingObjectStore(Repository repo, long limit) {
+        super(repo);
+        this.limit = limit;
+    }
+
+    @Override
+    protected byte[] treePayload(ObjectId id) {
+        Object v = lookup(id);
+        if (v instanceof byte[])
+            return (byte[]) v;
+        byte[] payload = super.treePayload(id);
+        remember(id, payload, ENTRY_OVERHEAD + payload.length);
+        return payload;
+    }
+
+    @Override
+    public Commit readCommit(ObjectId id) {
+        Object v = lookup(id);
+        if (v instanceof Commit)
+            return (Commit) v;
+        Commit commit = super.readCommit(id);
+        long cost = ENTRY_OVERHEAD + 2 * ID_COST + 2L * (length(commit.message) + length(commit.timestamp)
+                + length(commit.authorName) + length(commit.authorEmail));
+        remember(id, commit, cost);
+        return commit;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long cachedBytes() {
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private synchronized Object lookup(ObjectId id) {
+        Cached c = lru.get(id);
+        if (c == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return c.value;
+    }
+
+    private synchronized void remember(ObjectId id, Object value, long cost) {
+        if (cost > limit / 16)
+            return;
+        Cached old = lru.put(id, new Cached(value, cost));
+        if (old != null)
+            bytes -= old.cost;
+        bytes += cost;
+        Iterator<Cached> it = lru.values().iterator();
+        while (bytes > limit && it.hasNext()) {
+            bytes -= it.next().cost;
+            it.remove();
+        }
+    }
+}
@@ -6,14 +6,15 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
 public class Commit {
-    public final String tree;
-    public final String parent;
+    public final ObjectId tree;
+    public final ObjectId parent;
     public final String authorName;
     public final String authorEmail;
     public final String timestamp;
     public final String message;
 
-    public Commit(String tree, String parent, String authorName, String authorEmail, String timestamp, String message) {
+    public Commit(ObjectId tree, ObjectId parent, String authorName, String authorEmail, String timestamp,
+            String message) {
         this.tree = tree;
         this.parent = parent;
         this.authorName = authorName;
@@ -22,6 +23,50 @@ public class Commit {
         this.message = message;
     }
 
+    public static Commit parse(byte[] payload) {
+        String body = new String(payload, StandardCharsets.UTF_8);
+        ObjectId tree = null, parent = null;
+        String name = null, email = null, timestamp = null;
+        int pos = 0;
+        while (pos < body.length()) {
+            int nl = body.indexOf('\n', pos);
+            if (nl < 0)
+                nl = body.length();
+            String l = body.substring(pos, nl);
+            pos = nl + 1;
+            if (l.isEmpty())
+                break;
+            if (l.startsWith("tree "))
+                tree = ObjectId.fromHex(l.substring(5).trim());
+            else if (l.startsWith("parent "))
+                parent = ObjectId.fromHex(l.substring(7).trim());
+            else if (l.startsWith("author ")) {
+                String a = l.substring(7).trim();
+                int sp = a.lastIndexOf(' ');
+                name = sp < 0 ? a : a.substring(0, sp);
+                email = sp < 0 ? "" : a.substring(sp + 1);
+            } else if (l.startsWith("timestamp "))
+                timestamp = l.substring(10).trim();
+        }
+        String message = pos < body.length() ? body.substring(pos) : "";
+        int end = message.length();
+        while (end > 0 && message.charAt(end - 1) == '\n')
+            end--;
+        return new Commit(tree, parent, name, email, timestamp, message.substring(0, end));
+    }
+
+    public String author() {
+        return authorEmail == null || authorEmail.isEmpty() ? authorName : authorName + " " + authorEmail;
+    }
+
+    public long epochMillis() {
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
     public static String nowIso() {
         return DateTimeFormatter.ISO_INSTANT.withZone(ZoneOffset.UTC).format(Instant.now());
     }
@@ -29,7 +74,7 @@ public class Commit {
     public byte[] serializePayload() {
         StringBuilder sb = new StringBuilder();
         sb.append("tree ").append(tree).append("\n");
-        if (parent != null && !parent.isBlank())
+        if (parent != null)
             sb.append("parent ").append(parent).append("\n");
         sb.append("author ").append(authorName).append(" ").append(authorEmail).append("\n");
         sb.append("timestamp ").append(timestamp).append("\n");
@@ -0,0 +1,185 @@
+package com.jit.objects;
+
+import com.jit.repo.LockFile;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class CommitGraph {
+    static final byte[] MAGIC = { 'J', 'C', 'G', 'R' };
+    static final int VERSION = 1;
+    public static final int NONE = -1;
+
+    private static final int HEADER = 12;
+    private static final int RECORD = 20 + 20 + 4 + 4 + 8;
+
+    private final MappedByteBuffer buf;
+    private final int count;
+    private int[] table;
+
+    private CommitGraph(MappedByteBuffer buf, int count) {
+        this.buf = buf;
+        this.count = count;
+    }
+
+    public static CommitGraph open(Repository repo) {
+        Path file = repo.commitGraphFile();
+        if (!Files.exists(file))
+            return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int count = validCount(buf, ch.size());
+            return count < 0 ? null : new CommitGraph(buf, count);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int find(ObjectId id) {
+        int[] t = table();
+        int mask = t.length - 1;
+        for (int slot = (int) id.hash1() & mask; t[slot] != 0; slot = (slot + 1) & mask)
+            if (id.rawEquals(buf, HEADER + (t[slot] - 1) * RECORD))
+                return t[slot] - 1;
+        return NONE;
+    }
+
+    private int[] table() {
+        if (table == null) {
+            int[] t = new int[Integer.highestOneBit(Math.max(1, count)) * 4];
+            int mask = t.length - 1;
+            for (int i = count - 1; i >= 0; i--) {
+                int slot = (int) buf.getLong(HEADER + i * RECORD) & mask;
+                while (t[slot] != 0)
+                    slot = (slot + 1) & mask;
+                t[slot] = i + 1;
+            }
+            table = t;
+        }
+        return table;
+    }
+
+    public ObjectId idAt(int pos) {
+        return ObjectId.fromRaw(buf, HEADER + pos * RECORD);
+    }
+
+    public ObjectId treeAt(int pos) {
+        return ObjectId.fromRaw(buf, HEADER + pos * RECORD + 20);
+    }
+
+    public int parentAt(int pos) {
+        return buf.getInt(HEADER + pos * RECORD + 40);
+    }
+
+    public int generationAt(int pos) {
+        return buf.getInt(HEADER + pos * RECORD + 44);
+    }
+
+    public long timeAt(int pos) {
+        return buf.getLong(HEADER + pos * RECORD + 48);
+    }
+
+    public static int write(Repository repo, ObjectStore store, Collection<ObjectId> tips) {
+        List<ObjectId> order = new ArrayList<>();
+        Map<ObjectId, Commit> commits = new HashMap<>();
+        for (ObjectId tip : tips) {
+            Deque<ObjectId> chain = new ArrayDeque<>();
+            ObjectId cur = tip;
+            while (cur != null && !commits.containsKey(cur)) {
+                Commit c = store.readCommit(cur);
+                commits.put(cur, c);
+                chain.push(cur);
+                cur = c.parent;
+            }
+            while (!chain.isEmpty())
+                order.add(chain.pop());
+        }
+        Map<ObjectId, Integer> positions = new HashMap<>();
+        ByteBuffer out = ByteBuffer.allocate(HEADER + order.size() * RECORD);
+        out.put(MAGIC).putInt(VERSION).putInt(order.size());
+        int[] generations = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            ObjectId id = order.get(i);
+            Commit c = commits.get(id);
+            Integer parent = c.parent == null ? null : positions.get(c.parent);
+            generations[i] = parent == null ? 1 : generations[parent] + 1;
+            putRecord(out, id, c.tree, parent == null ? NONE : parent, generations[i], c.epochMillis());
+            positions.put(id, i);
+        }
+        try (LockFile lock = LockFile.acquire(repo.commitGraphFile())) {
+            lock.write(out.array());
+            lock.commit();
+        }
+        return order.size();
+    }
+
+    public static boolean append(Repository repo, ObjectId id, Commit commit) {
+        Path file = repo.commitGraphFile();
+        boolean root = commit.parent == null;
+        if (!Files.exists(file) && !root)
+            return false;
+        try (LockFile lock = LockFile.acquire(file)) {
+            try (FileChannel ch = FileChannel.open(lock.target(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                int count;
+                if (ch.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER);
+                    header.put(MAGIC).putInt(VERSION).putInt(0).flip();
+                    ch.write(header, 0);
+                    count = 0;
+                } else {
+                    count = validCount(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), ch.size());
+                    if (count < 0)
+                        return false;
+                }
+                long end = HEADER + (long) count * RECORD;
+                CommitGraph graph = new CommitGraph(ch.map(FileChannel.MapMode.READ_ONLY, 0, end), count);
+                if (graph.find(id) >= 0)
+                    return true;
+                int parent = root ? NONE : graph.find(commit.parent);
+                if (!root && parent < 0)
+                    return false;
+                int generation = parent < 0 ? 1 : graph.generationAt(parent) + 1;
+                ByteBuffer rec = ByteBuffer.allocate(RECORD);
+                putRecord(rec, id, commit.tree, parent, generation, commit.epochMillis());
+                ch.write(rec.flip(), end);
+                ch.force(false);
+                ch.write(ByteBuffer.allocate(4).putInt(count + 1).flip(), 8);
+                return true;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("commit-graph write failed");
+        }
+    }
+
+    private static int validCount(ByteBuffer buf, long size) {
+        if (size < HEADER)
+            return -1;
+        byte[] magic = new byte[4];
+        buf.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC) || buf.getInt(4) != VERSION)
+            return -1;
+        int count = buf.getInt(8);
+        if (count < 0 || HEADER + (long) count * RECORD > size)
+            return -1;
+        return count;
+    }
+
+    private static void putRecord(ByteBuffer out, ObjectId id, ObjectId tree, int parent, int generation,
+            long time) {
+        id.copyRawTo(out);
+        tree.copyRawTo(out);
+        out.putInt(parent).putInt(generation).putLong(time);
+    }
+}
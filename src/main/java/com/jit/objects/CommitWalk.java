@@ -0,0 +1,74 @@
+package com.jit.objects;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class CommitWalk implements Iterator<CommitWalk.Node> {
+    private final ObjectStore store;
+    private final CommitGraph graph;
+    private final ObjectId start;
+    private Node last;
+    private Node pending;
+    private boolean done;
+
+    public class Node {
+        public final ObjectId id;
+        private final int pos;
+        private Commit commit;
+
+        Node(ObjectId id, int pos) {
+            this.id = id;
+            this.pos = pos;
+        }
+
+        public Commit commit() {
+            if (commit == null)
+                commit = store.readCommit(id);
+            return commit;
+        }
+
+        public long time() {
+            return pos != CommitGraph.NONE ? graph.timeAt(pos) : commit().epochMillis();
+        }
+    }
+
+    public CommitWalk(ObjectStore store, CommitGraph graph, ObjectId start) {
+        this.store = store;
+        this.graph = graph;
+        this.start = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null && !done) {
+            pending = advance();
+            done = pending == null;
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Node next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        last = pending;
+        pending = null;
+        return last;
+    }
+
+    private Node advance() {
+        if (last == null)
+            return node(start);
+        if (last.pos != CommitGraph.NONE) {
+            int p = graph.parentAt(last.pos);
+            return p == CommitGraph.NONE ? null : new Node(graph.idAt(p), p);
+        }
+        return node(last.commit().parent);
+    }
+
+    private Node node(ObjectId id) {
+        if (id == null)
+            return null;
+        return new Node(id, graph == null ? CommitGraph.NONE : graph.find(id));
+    }
+}
@@ -0,0 +1,143 @@
+package com.jit.objects;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Delta {
+    private static final int BLOCK = 16;
+    private static final int MAX_CANDIDATES = 8;
+    private static final int MAX_INSERT = 0x7f;
+
+    public static byte[] create(byte[] base, byte[] target) {
+        Map<Integer, int[]> blocks = indexBlocks(base);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(16, target.length / 4));
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int pending = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            int[] cands = blocks.get(blockHash(target, i));
+            int bestOff = -1, bestLen = 0;
+            if (cands != null) {
+                for (int c : cands) {
+                    if (c < 0)
+                        break;
+                    int len = 0;
+                    while (c + len < base.length && i + len < target.length && base[c + len] == target[i + len])
+                        len++;
+                    if (len > bestLen) {
+                        bestLen = len;
+                        bestOff = c;
+                    }
+                }
+            }
+            if (bestLen < BLOCK) {
+                i++;
+                continue;
+            }
+            while (bestOff > 0 && i > pending && base[bestOff - 1] == target[i - 1]) {
+                bestOff--;
+                i--;
+                bestLen++;
+            }
+            flushInsert(out, target, pending, i);
+            out.write(0x80);
+            writeVarint(out, bestOff);
+            writeVarint(out, bestLen);
+            i += bestLen;
+            pending = i;
+        }
+        flushInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        long baseSize = readVarint(delta, pos);
+        long resultSize = readVarint(delta, pos);
+        if (baseSize != base.length || resultSize > Integer.MAX_VALUE)
+            throw new RuntimeException("corrupt delta");
+        byte[] out = new byte[(int) resultSize];
+        int o = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++] & 0xff;
+            if ((op & 0x80) != 0) {
+                long off = readVarint(delta, pos);
+                long len = readVarint(delta, pos);
+                if (off + len > base.length || o + len > out.length)
+                    throw new RuntimeException("corrupt delta");
+                System.arraycopy(base, (int) off, out, o, (int) len);
+                o += (int) len;
+            } else {
+                if (op == 0 || pos[0] + op > delta.length || o + op > out.length)
+                    throw new RuntimeException("corrupt delta");
+                System.arraycopy(delta, pos[0], out, o, op);
+                pos[0] += op;
+                o += op;
+            }
+        }
+        if (o != out.length)
+            throw new RuntimeException("corrupt delta");
+        return out;
+    }
+
+    private static void flushInsert(ByteArrayOutputStream out, byte[] target, int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(target, from, n);
+            from += n;
+        }
+    }
+
+    private static Map<Integer, int[]> indexBlocks(byte[] base) {
+        Map<Integer, int[]> blocks = new HashMap<>(Math.max(16, base.length / BLOCK * 2));
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            int[] cands = blocks.computeIfAbsent(blockHash(base, i), k -> newCandidates());
+            for (int j = 0; j < cands.length; j++) {
+                if (cands[j] < 0) {
+                    cands[j] = i;
+                    break;
+                }
+            }
+        }
+        return blocks;
+    }
+
+    private static int[] newCandidates() {
+        int[] c = new int[MAX_CANDIDATES];
+        Arrays.fill(c, -1);
+        return c;
+    }
+
+    private static int blockHash(byte[] data, int off) {
+        int h = 0;
+        for (int i = 0; i < BLOCK; i++)
+            h = h * 31 + data[off + i];
+        return h;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7fL) != 0) {
+            out.write((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static long readVarint(byte[] data, int[] pos) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= data.length || shift > 63)
+                throw new RuntimeException("corrupt delta");
+            int b = data[pos[0]++] & 0xff;
+            v |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.jit.objects;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public enum HashAlgorithm {
+    SHA1("SHA-1", 20),
+    SHA256("SHA-256", 32);
+
+    private final String jcaName;
+    private final int length;
+    private final ThreadLocal<MessageDigest> cached;
+
+    HashAlgorithm(String jcaName, int length) {
+        this.jcaName = jcaName;
+        this.length = length;
+        this.cached = ThreadLocal.withInitial(this::newDigest);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(jcaName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(jcaName + " not available");
+        }
+    }
+
+    public MessageDigest digest() {
+        MessageDigest md = cached.get();
+        md.reset();
+        return md;
+    }
+
+    public byte[] hash(byte[] data) {
+        return digest().digest(data);
+    }
+
+    public byte[] hash(byte[] header, byte[] payload) {
+        MessageDigest md = digest();
+        md.update(header);
+        md.update(payload);
+        return md.digest();
+    }
+}
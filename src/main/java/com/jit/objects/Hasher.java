@@ -1,23 +1,38 @@
 package com.jit.objects;
 
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 public class Hasher {
     public static byte[] sha1(byte[] data) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            return md.digest(data);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("sha1 not available");
+        return HashAlgorithm.SHA1.hash(data);
+    }
+
+    public static MessageDigest sha1() {
+        return HashAlgorithm.SHA1.digest();
+    }
+
+    public static ObjectId id(MessageDigest md) {
+        return ObjectId.fromRaw(md.digest());
+    }
+
+    public static byte[] fromHex(String hex) {
+        if ((hex.length() & 1) != 0)
+            throw new RuntimeException("invalid hex: " + hex);
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = ObjectId.nibble(hex.charAt(2 * i));
+            int lo = ObjectId.nibble(hex.charAt(2 * i + 1));
+            if ((hi | lo) < 0)
+                throw new RuntimeException("invalid hex: " + hex);
+            out[i] = (byte) (hi << 4 | lo);
         }
+        return out;
     }
 
     public static String toHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
+            ObjectId.format(out, 2 * i, bytes[i] & 0xff, 2);
+        return new String(out);
     }
 }
@@ -0,0 +1,172 @@
+package com.jit.objects;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public final class ObjectId implements Comparable<ObjectId> {
+    public static final int RAW_LENGTH = 20;
+    public static final int HEX_LENGTH = 40;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] NIBBLE = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLE, (byte) -1);
+        for (int i = 0; i < 10; i++)
+            NIBBLE['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            NIBBLE['a' + i] = (byte) (10 + i);
+            NIBBLE['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private final long w1;
+    private final long w2;
+    private final int w3;
+
+    private ObjectId(long w1, long w2, int w3) {
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    public static ObjectId fromRaw(byte[] b) {
+        if (b.length != RAW_LENGTH)
+            throw new RuntimeException("invalid object id length: " + b.length);
+        return fromRaw(b, 0);
+    }
+
+    public static ObjectId fromRaw(byte[] b, int off) {
+        return new ObjectId(getLong(b, off, 8), getLong(b, off + 8, 8), (int) getLong(b, off + 16, 4));
+    }
+
+    public static ObjectId fromRaw(ByteBuffer buf, int off) {
+        return new ObjectId(buf.getLong(off), buf.getLong(off + 8), buf.getInt(off + 16));
+    }
+
+    boolean rawEquals(ByteBuffer buf, int off) {
+        return buf.getLong(off) == w1 && buf.getLong(off + 8) == w2 && buf.getInt(off + 16) == w3;
+    }
+
+    public static ObjectId fromHex(String hex) {
+        if (hex.length() != HEX_LENGTH)
+            throw new RuntimeException("invalid hash: " + hex);
+        return new ObjectId(parse(hex, 0, 16), parse(hex, 16, 16), (int) parse(hex, 32, 8));
+    }
+
+    public static boolean isHex(String s) {
+        if (s == null || s.length() != HEX_LENGTH)
+            return false;
+        for (int i = 0; i < HEX_LENGTH; i++)
+            if (nibble(s.charAt(i)) < 0)
+                return false;
+        return true;
+    }
+
+    public void copyRawTo(byte[] dst, int off) {
+        putLong(dst, off, w1);
+        putLong(dst, off + 8, w2);
+        for (int i = 0; i < 4; i++)
+            dst[off + 16 + i] = (byte) (w3 >>> (24 - 8 * i));
+    }
+
+    public void copyRawTo(ByteBuffer buf) {
+        buf.putLong(w1).putLong(w2).putInt(w3);
+    }
+
+    public byte[] toRaw() {
+        byte[] b = new byte[RAW_LENGTH];
+        copyRawTo(b, 0);
+        return b;
+    }
+
+    long hash1() {
+        return w1;
+    }
+
+    long hash2() {
+        return w2 ^ ((long) w3 << 32 | w3 & 0xffffffffL);
+    }
+
+    public int firstByte() {
+        return (int) (w1 >>> 56);
+    }
+
+    public String name() {
+        char[] c = new char[HEX_LENGTH];
+        format(c, 0, w1, 16);
+        format(c, 16, w2, 16);
+        format(c, 32, w3 & 0xffffffffL, 8);
+        return new String(c);
+    }
+
+    public String abbreviate(int len) {
+        return name().substring(0, len);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ObjectId))
+            return false;
+        ObjectId other = (ObjectId) o;
+        return w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (w1 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId o) {
+        int c = Long.compareUnsigned(w1, o.w1);
+        if (c == 0)
+            c = Long.compareUnsigned(w2, o.w2);
+        if (c == 0)
+            c = Integer.compareUnsigned(w3, o.w3);
+        return c;
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    static void format(char[] dst, int off, long v, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[off + i] = HEX[(int) (v & 0xf)];
+            v >>>= 4;
+        }
+    }
+
+    static int nibble(char c) {
+        return c < 128 ? NIBBLE[c] : -1;
+    }
+
+    private static long parse(String s, int off, int digits) {
+        long v = 0;
+        for (int i = 0; i < digits; i++) {
+            int n = nibble(s.charAt(off + i));
+            if (n < 0)
+                throw new RuntimeException("invalid hash: " + s);
+            v = (v << 4) | n;
+        }
+        return v;
+    }
+
+    private static long getLong(byte[] b, int off, int len) {
+        long v = 0;
+        for (int i = 0; i < len; i++)
+            v = (v << 8) | (b[off + i] & 0xff);
+        return v;
+    }
+
+    private static void putLong(byte[] b, int off, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[off + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+}
@@ -1,70 +1,468 @@
 package com.jit.objects;
 
+import com.jit.repo.LockFile;
 import com.jit.repo.Repository;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 public class ObjectStore {
+    static final HashAlgorithm OBJECT_HASH = HashAlgorithm.SHA1;
+    private static final int COPY_BUFFER = 64 * 1024;
+    private static final int HEADER_BUFFER = 256;
+    private static final int ZLIB_MAGIC = 0x78;
+    private static final double FILTER_FPP = 0.01;
+    private static final long FILTER_MIN_CAPACITY = 1024;
+
     private final Repository repo;
+    private final int level;
+    private List<PackFile> packs;
+    private BloomFilter filter;
+    private boolean filterLoaded;
+    private boolean filterDirty;
+    private long filterSkips;
+    private long filterFalsePositives;
 
     public ObjectStore(Repository repo) {
         this.repo = repo;
+        this.level = repo.config().getInt("core.compression", Deflater.DEFAULT_COMPRESSION);
+        if (level < -1 || level > 9)
+            throw new RuntimeException("core.compression must be between -1 and 9");
+    }
+
+    public int compressionLevel() {
+        return level;
+    }
+
+    public ObjectId writeObject(String type, byte[] payload) {
+        byte[] header = header(type, payload.length);
+        ObjectId id = ObjectId.fromRaw(OBJECT_HASH.hash(header, payload));
+        if (present(id))
+            return id;
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(repo.objectsDir(), "tmp_obj_", null);
+            Files.write(tmp, deflate(header, payload), StandardOpenOption.TRUNCATE_EXISTING);
+            install(tmp, pathFor(id));
+            tmp = null;
+        } catch (IOException e) {
+            throw new RuntimeException("object write failed");
+        } finally {
+            deleteQuietly(tmp);
+        }
+        added(id);
+        return id;
     }
 
-    public String writeObject(String type, byte[] payload) {
-        byte[] header = (type + " " + payload.length + "\n").getBytes(StandardCharsets.UTF_8);
-        byte[] all = new byte[header.length + payload.length];
-        System.arraycopy(header, 0, all, 0, header.length);
-        System.arraycopy(payload, 0, all, header.length, payload.length);
-        String hex = Hasher.toHex(Hasher.sha1(all));
-        Path p = pathFor(hex);
+    public ObjectId writeObject(String type, Path file) {
+        Path tmp = null;
         try {
-            if (!Files.exists(p)) {
-                Files.createDirectories(p.getParent());
-                Files.write(p, all, StandardOpenOption.CREATE_NEW);
+            long size = Files.size(file);
+            byte[] header = header(type, size);
+            MessageDigest md = OBJECT_HASH.digest();
+            md.update(header);
+            tmp = Files.createTempFile(repo.objectsDir(), "tmp_obj_", null);
+            long copied = 0;
+            Deflater deflater = new Deflater(level);
+            try (InputStream in = Files.newInputStream(file);
+                    OutputStream out = new DeflaterOutputStream(
+                            Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING), deflater, COPY_BUFFER)) {
+                out.write(header);
+                byte[] buf = new byte[COPY_BUFFER];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    md.update(buf, 0, n);
+                    out.write(buf, 0, n);
+                    copied += n;
+                }
+            } finally {
+                deflater.end();
+            }
+            if (copied != size)
+                throw new RuntimeException("file changed while writing object: " + file);
+            ObjectId id = Hasher.id(md);
+            if (!present(id)) {
+                install(tmp, pathFor(id));
+                tmp = null;
+                added(id);
             }
+            return id;
         } catch (IOException e) {
             throw new RuntimeException("object write failed");
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    public static ObjectId hashObject(String type, Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            long size = Files.size(file);
+            MessageDigest md = OBJECT_HASH.digest();
+            md.update(header(type, size));
+            byte[] buf = new byte[COPY_BUFFER];
+            long read = 0;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+                read += n;
+            }
+            if (read != size)
+                throw new RuntimeException("file changed while hashing: " + file);
+            return Hasher.id(md);
+        } catch (IOException e) {
+            throw new RuntimeException("read failed: " + file);
+        }
+    }
+
+    private static byte[] header(String type, long size) {
+        return (type + " " + size + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void install(Path tmp, Path p) throws IOException {
+        Files.createDirectories(p.getParent());
+        try {
+            Files.move(tmp, p, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // another writer installed the same content first
+            Files.deleteIfExists(tmp);
         }
-        return hex;
     }
 
-    public StoredObject readObject(String hash) {
+    private static void deleteQuietly(Path p) {
+        if (p == null)
+            return;
         try {
-            byte[] all = Files.readAllBytes(pathFor(hash));
-            int i = indexOf(all, (byte) '\n');
-            if (i < 0)
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+        }
+    }
+
+    public boolean contains(ObjectId id) {
+        return Files.exists(pathFor(id)) || inPack(id);
+    }
+
+    private boolean present(ObjectId id) {
+        BloomFilter f = filter();
+        if (f != null && !f.mightContain(id)) {
+            synchronized (this) {
+                filterSkips++;
+            }
+            return false;
+        }
+        if (inPack(id) || Files.exists(pathFor(id)))
+            return true;
+        if (f != null) {
+            synchronized (this) {
+                filterFalsePositives++;
+            }
+        }
+        return false;
+    }
+
+    private void added(ObjectId id) {
+        BloomFilter f = filter();
+        if (f == null)
+            return;
+        f.add(id);
+        synchronized (this) {
+            filterDirty = true;
+        }
+    }
+
+    public synchronized BloomFilter filter() {
+        if (!filterLoaded) {
+            filter = BloomFilter.read(repo.objectFilterFile());
+            filterLoaded = true;
+        }
+        return filter;
+    }
+
+    public synchronized long filterSkips() {
+        return filterSkips;
+    }
+
+    public synchronized long filterFalsePositives() {
+        return filterFalsePositives;
+    }
+
+    public synchronized BloomFilter writeFilter() {
+        reloadPacks();
+        List<ObjectId> loose = looseObjects();
+        long n = loose.size();
+        for (PackFile pack : packs())
+            n += pack.count();
+        BloomFilter f = new BloomFilter(Math.max(FILTER_MIN_CAPACITY, n * 2), FILTER_FPP);
+        for (ObjectId id : loose)
+            f.add(id);
+        for (PackFile pack : packs())
+            for (int i = 0; i < pack.count(); i++)
+                f.add(pack.idAt(i));
+        try (LockFile lock = LockFile.acquire(repo.objectFilterFile())) {
+            lock.write(f.encode());
+            lock.commit();
+        }
+        filter = f;
+        filterLoaded = true;
+        filterDirty = false;
+        return f;
+    }
+
+    public synchronized void saveFilter() {
+        if (!filterDirty)
+            return;
+        if (filter.count() > filter.capacity()) {
+            writeFilter();
+            return;
+        }
+        try (LockFile lock = LockFile.tryAcquire(repo.objectFilterFile())) {
+            if (lock == null)
+                return;
+            BloomFilter current = BloomFilter.read(repo.objectFilterFile());
+            if (current == null || !current.merge(filter))
+                return;
+            lock.write(current.encode());
+            lock.commit();
+            filter = current;
+            filterDirty = false;
+        }
+    }
+
+    public ObjectInfo readInfo(ObjectId id) {
+        boolean loose = Files.exists(pathFor(id));
+        if (!loose) {
+            PackFile pack = findPackForRead(id);
+            if (pack != null)
+                return pack.info(id);
+        }
+        try (ObjectStream os = openObject(id, HEADER_BUFFER, !loose)) {
+            return new ObjectInfo(os.type, os.size);
+        } catch (IOException e) {
+            throw new RuntimeException("object not found");
+        }
+    }
+
+    public StoredObject readObject(ObjectId id) {
+        boolean loose = Files.exists(pathFor(id));
+        if (!loose) {
+            PackFile pack = findPackForRead(id);
+            if (pack != null)
+                return pack.read(id);
+        }
+        try (ObjectStream os = openObject(id, COPY_BUFFER, !loose)) {
+            if (os.size > Integer.MAX_VALUE - 8)
+                throw new RuntimeException("object too large: " + id);
+            byte[] payload = os.stream().readNBytes((int) os.size);
+            if (payload.length != os.size)
                 throw new RuntimeException("corrupt object");
-            String header = new String(all, 0, i, StandardCharsets.UTF_8);
-            String[] parts = header.split(" ");
+            return new StoredObject(os.type, payload);
+        } catch (IOException e) {
+            throw new RuntimeException("object not found");
+        }
+    }
+
+    public List<Tree.Entry> readTree(ObjectId id) {
+        return Collections.unmodifiableList(Tree.parse(treePayload(id)));
+    }
+
+    public TreeCursor openTree(ObjectId id) {
+        return new TreeCursor(treePayload(id));
+    }
+
+    protected byte[] treePayload(ObjectId id) {
+        StoredObject obj = readObject(id);
+        if (!obj.type.equals("tree"))
+            throw new RuntimeException("expected tree");
+        return obj.payload;
+    }
+
+    public Commit readCommit(ObjectId id) {
+        StoredObject obj = readObject(id);
+        if (!obj.type.equals("commit"))
+            throw new RuntimeException("object is not commit");
+        return Commit.parse(obj.payload);
+    }
+
+    public ObjectStream openObject(ObjectId id) {
+        return openObject(id, COPY_BUFFER, false);
+    }
+
+    private ObjectStream openObject(ObjectId id, int bufferSize, boolean rescanned) {
+        InputStream in;
+        try {
+            in = new BufferedInputStream(Files.newInputStream(pathFor(id)), bufferSize);
+        } catch (IOException e) {
+            PackFile pack = rescanned ? findPack(id) : findPackForRead(id);
+            if (pack == null)
+                throw new RuntimeException("object not found");
+            return pack.open(id);
+        }
+        try {
+            in.mark(1);
+            boolean compressed = in.read() == ZLIB_MAGIC;
+            in.reset();
+            if (compressed)
+                in = inflating(in, bufferSize);
+            ByteArrayOutputStream hb = new ByteArrayOutputStream(32);
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0 || hb.size() > 64)
+                    throw new RuntimeException("corrupt object");
+                hb.write(c);
+            }
+            String[] parts = hb.toString(StandardCharsets.UTF_8).split(" ");
             if (parts.length != 2)
                 throw new RuntimeException("corrupt object");
-            String type = parts[0];
-            int size = Integer.parseInt(parts[1]);
-            byte[] payload = new byte[size];
-            System.arraycopy(all, i + 1, payload, 0, size);
-            return new StoredObject(type, payload);
+            return new ObjectStream(parts[0], Long.parseLong(parts[1]), in);
+        } catch (IOException | RuntimeException e) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+            if (e instanceof RuntimeException)
+                throw (RuntimeException) e;
+            throw new RuntimeException("object read failed");
+        }
+    }
+
+    private byte[] deflate(byte[] header, byte[] payload) {
+        Deflater deflater = new Deflater(level);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, payload.length / 2));
+            byte[] buf = new byte[8192];
+            deflater.setInput(header);
+            while (!deflater.needsInput())
+                out.write(buf, 0, deflater.deflate(buf));
+            deflater.setInput(payload);
+            deflater.finish();
+            while (!deflater.finished())
+                out.write(buf, 0, deflater.deflate(buf));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static InputStream inflating(InputStream raw, int bufferSize) {
+        Inflater inflater = new Inflater();
+        return new BufferedInputStream(new InflaterInputStream(raw, inflater, Math.min(bufferSize, 8192)) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        }, bufferSize);
+    }
+
+    public List<ObjectId> looseObjects() {
+        List<ObjectId> out = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(repo.objectsDir())) {
+            for (Path d : dirs) {
+                String dn = d.getFileName().toString();
+                if (dn.length() != 2 || !Files.isDirectory(d))
+                    continue;
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(d)) {
+                    for (Path f : files) {
+                        String fn = f.getFileName().toString();
+                        if (fn.length() == 38 && ObjectId.isHex(dn + fn))
+                            out.add(ObjectId.fromHex(dn + fn));
+                    }
+                }
+            }
         } catch (IOException e) {
-            throw new RuntimeException("object not found");
+            throw new RuntimeException("object listing failed");
+        }
+        return out;
+    }
+
+    public void deleteLoose(ObjectId id) {
+        try {
+            Path p = pathFor(id);
+            Files.deleteIfExists(p);
+            try (DirectoryStream<Path> rest = Files.newDirectoryStream(p.getParent())) {
+                if (!rest.iterator().hasNext())
+                    Files.deleteIfExists(p.getParent());
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    public synchronized List<PackFile> packs() {
+        if (packs == null)
+            packs = scanPacks(List.of());
+        return packs;
+    }
+
+    public synchronized void reloadPacks() {
+        packs = scanPacks(packs == null ? List.of() : packs);
+    }
+
+    private List<PackFile> scanPacks(List<PackFile> loaded) {
+        Map<Path, PackFile> old = new HashMap<>();
+        for (PackFile pack : loaded)
+            old.put(pack.indexPath(), pack);
+        List<PackFile> found = new ArrayList<>();
+        Path dir = repo.packDir();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "pack-*.idx")) {
+                for (Path idx : ds) {
+                    PackFile pack = old.remove(idx);
+                    found.add(pack != null ? pack : PackFile.open(idx));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("pack listing failed");
+            }
         }
+        for (PackFile gone : old.values())
+            gone.close();
+        return found;
+    }
+
+    private boolean inPack(ObjectId id) {
+        return findPack(id) != null;
     }
 
-    private int indexOf(byte[] bytes, byte target) {
-        for (int i = 0; i < bytes.length; i++)
-            if (bytes[i] == target)
-                return i;
-        return -1;
+    private PackFile findPack(ObjectId id) {
+        for (PackFile pack : packs())
+            if (pack.contains(id))
+                return pack;
+        return null;
     }
 
-    private Path pathFor(String hash) {
-        String dir = hash.substring(0, 2);
-        String file = hash.substring(2);
-        return repo.objectsDir().resolve(dir).resolve(file);
+    private synchronized PackFile findPackForRead(ObjectId id) {
+        PackFile pack = findPack(id);
+        if (pack == null) {
+            reloadPacks();
+            pack = findPack(id);
+        }
+        return pack;
+    }
+
+    private Path pathFor(ObjectId id) {
+        String hex = id.name();
+        return repo.objectsDir().resolve(hex.substring(0, 2)).resolve(hex.substring(2));
     }
 
     public static class StoredObject {
@@ -76,4 +474,46 @@ public class ObjectStore {
             this.payload = payload;
         }
     }
+
+    public static class ObjectInfo {
+        public final String type;
+        public final long size;
+
+        public ObjectInfo(String type, long size) {
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    public static class ObjectStream implements Closeable {
+        public final String type;
+        public final long size;
+        private final InputStream in;
+
+        public ObjectStream(String type, long size, InputStream in) {
+            this.type = type;
+            this.size = size;
+            this.in = in;
+        }
+
+        public InputStream stream() {
+            return in;
+        }
+
+        public ReadableByteChannel channel() {
+            return Channels.newChannel(in);
+        }
+
+        public long copyTo(OutputStream out) throws IOException {
+            long n = in.transferTo(out);
+            if (n != size)
+                throw new RuntimeException("corrupt object");
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
 }
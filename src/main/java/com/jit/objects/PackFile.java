@@ -0,0 +1,276 @@
+package com.jit.objects;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class PackFile {
+    static final byte[] PACK_MAGIC = { 'J', 'P', 'C', 'K' };
+    static final byte[] IDX_MAGIC = { 'J', 'P', 'I', 'X' };
+    static final int VERSION = 1;
+    static final int PACK_HEADER = 12;
+    static final int TYPE_COMMIT = 1;
+    static final int TYPE_TREE = 2;
+    static final int TYPE_BLOB = 3;
+    static final int TYPE_DELTA = 6;
+
+    private static final int FANOUT_OFF = 8;
+    private static final int IDS_OFF = FANOUT_OFF + 256 * 4;
+    private static final int MAX_DELTA_DEPTH = 64;
+    private static final int TRAILER = 20;
+
+    private final Path idxPath;
+    private final Path packPath;
+    private final FileChannel pack;
+    private final MappedByteBuffer idx;
+    private final int count;
+    private final int offsetsOff;
+
+    private PackFile(Path idxPath, Path packPath, FileChannel pack, MappedByteBuffer idx) {
+        this.idxPath = idxPath;
+        this.packPath = packPath;
+        this.pack = pack;
+        this.idx = idx;
+        this.count = idx.getInt(FANOUT_OFF + 255 * 4);
+        this.offsetsOff = IDS_OFF + count * ObjectId.RAW_LENGTH;
+    }
+
+    public static PackFile open(Path idxPath) {
+        String name = idxPath.getFileName().toString();
+        Path packPath = idxPath.resolveSibling(name.substring(0, name.length() - ".idx".length()) + ".pack");
+        try (FileChannel ic = FileChannel.open(idxPath, StandardOpenOption.READ)) {
+            long size = ic.size();
+            if (size < IDS_OFF + 2 * TRAILER || size > Integer.MAX_VALUE)
+                throw new RuntimeException("corrupt pack index: " + name);
+            MappedByteBuffer idx = ic.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] magic = new byte[4];
+            idx.get(0, magic);
+            int count = idx.getInt(FANOUT_OFF + 255 * 4);
+            if (!Arrays.equals(magic, IDX_MAGIC) || idx.getInt(4) != VERSION || count < 0
+                    || size != IDS_OFF + (long) count * (ObjectId.RAW_LENGTH + 8) + 2 * TRAILER
+                    || !checksumMatches(idx, (int) size))
+                throw new RuntimeException("corrupt pack index: " + name);
+            return new PackFile(idxPath, packPath, FileChannel.open(packPath, StandardOpenOption.READ), idx);
+        } catch (IOException e) {
+            throw new RuntimeException("pack open failed: " + name);
+        }
+    }
+
+    private static boolean checksumMatches(MappedByteBuffer idx, int size) {
+        MessageDigest md = Hasher.sha1();
+        md.update(idx.duplicate().position(0).limit(size - TRAILER));
+        byte[] expected = new byte[TRAILER];
+        idx.get(size - TRAILER, expected);
+        return MessageDigest.isEqual(md.digest(), expected);
+    }
+
+    public Path path() {
+        return packPath;
+    }
+
+    public Path indexPath() {
+        return idxPath;
+    }
+
+    public void close() {
+        try {
+            pack.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public ObjectId idAt(int i) {
+        return ObjectId.fromRaw(idx, IDS_OFF + i * ObjectId.RAW_LENGTH);
+    }
+
+    public boolean contains(ObjectId id) {
+        return find(id) >= 0;
+    }
+
+    public ObjectStore.ObjectInfo info(ObjectId id) {
+        long off = find(id);
+        if (off < 0)
+            return null;
+        try {
+            return new ObjectStore.ObjectInfo(typeAt(off), header(off).size);
+        } catch (IOException e) {
+            throw new RuntimeException("pack read failed");
+        }
+    }
+
+    public ObjectStore.StoredObject read(ObjectId id) {
+        long off = find(id);
+        if (off < 0)
+            return null;
+        try {
+            EntryHeader h = header(off);
+            return new ObjectStore.StoredObject(typeAt(off), bytesAt(h, 0));
+        } catch (IOException e) {
+            throw new RuntimeException("pack read failed");
+        }
+    }
+
+    public ObjectStore.ObjectStream open(ObjectId id) {
+        long off = find(id);
+        if (off < 0)
+            return null;
+        try {
+            EntryHeader h = header(off);
+            if (h.type == TYPE_DELTA)
+                return new ObjectStore.ObjectStream(typeAt(off), h.size,
+                        new ByteArrayInputStream(bytesAt(h, 0)));
+            return new ObjectStore.ObjectStream(typeName(h.type), h.size, inflating(h.dataOffset));
+        } catch (IOException e) {
+            throw new RuntimeException("pack read failed");
+        }
+    }
+
+    long find(ObjectId id) {
+        int first = id.firstByte();
+        int lo = first == 0 ? 0 : idx.getInt(FANOUT_OFF + (first - 1) * 4);
+        int hi = idx.getInt(FANOUT_OFF + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = idAt(mid).compareTo(id);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return idx.getLong(offsetsOff + mid * 8);
+        }
+        return -1;
+    }
+
+    private String typeAt(long off) throws IOException {
+        for (int depth = 0; depth < MAX_DELTA_DEPTH; depth++) {
+            EntryHeader h = header(off);
+            if (h.type != TYPE_DELTA)
+                return typeName(h.type);
+            off = h.baseOffset;
+        }
+        throw new RuntimeException("delta chain too deep");
+    }
+
+    private byte[] bytesAt(EntryHeader h, int depth) throws IOException {
+        if (depth > MAX_DELTA_DEPTH)
+            throw new RuntimeException("delta chain too deep");
+        if (h.type != TYPE_DELTA) {
+            if (h.size > Integer.MAX_VALUE - 8)
+                throw new RuntimeException("object too large");
+            try (InputStream in = inflating(h.dataOffset)) {
+                byte[] data = in.readNBytes((int) h.size);
+                if (data.length != h.size)
+                    throw new RuntimeException("corrupt pack");
+                return data;
+            }
+        }
+        byte[] base = bytesAt(header(h.baseOffset), depth + 1);
+        byte[] delta;
+        try (InputStream in = inflating(h.dataOffset)) {
+            delta = in.readAllBytes();
+        }
+        return Delta.apply(base, delta);
+    }
+
+    private EntryHeader header(long off) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(32);
+        pack.read(buf, off);
+        byte[] b = buf.array();
+        int[] pos = { 1 };
+        int type = b[0];
+        long size = Delta.readVarint(b, pos);
+        long baseOffset = -1;
+        if (type == TYPE_DELTA)
+            baseOffset = off - Delta.readVarint(b, pos);
+        return new EntryHeader(type, size, off + pos[0], baseOffset);
+    }
+
+    private InputStream inflating(long dataOffset) {
+        Inflater inflater = new Inflater();
+        return new InflaterInputStream(new ChannelInputStream(pack, dataOffset), inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        };
+    }
+
+    static String typeName(int code) {
+        switch (code) {
+            case TYPE_COMMIT:
+                return "commit";
+            case TYPE_TREE:
+                return "tree";
+            case TYPE_BLOB:
+                return "blob";
+            default:
+                throw new RuntimeException("corrupt pack");
+        }
+    }
+
+    static int typeCode(String type) {
+        switch (type) {
+            case "commit":
+                return TYPE_COMMIT;
+            case "tree":
+                return TYPE_TREE;
+            case "blob":
+                return TYPE_BLOB;
+            default:
+                throw new RuntimeException("unknown object type: " + type);
+        }
+    }
+
+    private static class EntryHeader {
+        final int type;
+        final long size;
+        final long dataOffset;
+        final long baseOffset;
+
+        EntryHeader(int type, long size, long dataOffset, long baseOffset) {
+            this.type = type;
+            this.size = size;
+            this.dataOffset = dataOffset;
+            this.baseOffset = baseOffset;
+        }
+    }
+
+    private static class ChannelInputStream extends InputStream {
+        private final FileChannel ch;
+        private long pos;
+
+        ChannelInputStream(FileChannel ch, long pos) {
+            this.ch = ch;
+            this.pos = pos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = ch.read(ByteBuffer.wrap(b, off, len), pos);
+            if (n > 0)
+                pos += n;
+            return n;
+        }
+    }
+}
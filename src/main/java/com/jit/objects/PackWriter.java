@@ -0,0 +1,191 @@
+package com.jit.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class PackWriter implements AutoCloseable {
+    private final Path packDir;
+    private final Path tmp;
+    private final OutputStream out;
+    private final MessageDigest md;
+    private final Deflater deflater;
+    private final int expected;
+    private final List<Written> written = new ArrayList<>();
+    private long offset;
+    private boolean done;
+
+    public PackWriter(Path packDir, int count, int level) {
+        this.packDir = packDir;
+        this.expected = count;
+        this.md = HashAlgorithm.SHA1.newDigest();
+        this.deflater = new Deflater(level);
+        try {
+            Files.createDirectories(packDir);
+            this.tmp = Files.createTempFile(packDir, "tmp_pack_", null);
+            this.out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024), md);
+            ByteBuffer header = ByteBuffer.allocate(PackFile.PACK_HEADER);
+            header.put(PackFile.PACK_MAGIC).putInt(PackFile.VERSION).putInt(count);
+            write(header.array());
+        } catch (IOException e) {
+            throw new RuntimeException("pack write failed");
+        }
+    }
+
+    public long addWhole(ObjectId id, String type, byte[] payload) {
+        long start = begin(id, PackFile.typeCode(type), payload.length, -1);
+        deflate(payload);
+        return start;
+    }
+
+    public long addWhole(ObjectId id, String type, long size, InputStream in) {
+        long start = begin(id, PackFile.typeCode(type), size, -1);
+        try {
+            DeflaterOutputStream dos = new DeflaterOutputStream(new CountingStream(), deflater, 64 * 1024);
+            long n = in.transferTo(dos);
+            dos.finish();
+            deflater.reset();
+            if (n != size)
+                throw new RuntimeException("corrupt object: " + id);
+        } catch (IOException e) {
+            throw new RuntimeException("pack write failed");
+        }
+        return start;
+    }
+
+    public long addDelta(ObjectId id, long baseOffset, long size, byte[] delta) {
+        long start = begin(id, PackFile.TYPE_DELTA, size, baseOffset);
+        deflate(delta);
+        return start;
+    }
+
+    public String finish() {
+        if (written.size() != expected)
+            throw new RuntimeException("pack object count mismatch");
+        try {
+            out.flush();
+            byte[] checksum = md.digest();
+            out.write(checksum);
+            out.close();
+            done = true;
+            String name = "pack-" + Hasher.toHex(checksum);
+            Path packPath = packDir.resolve(name + ".pack");
+            Files.move(tmp, packPath, StandardCopyOption.ATOMIC_MOVE);
+            writeIndex(packDir.resolve(name + ".idx"), checksum);
+            return name;
+        } catch (IOException e) {
+            throw new RuntimeException("pack write failed");
+        }
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+        if (!done) {
+            try {
+                out.close();
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void writeIndex(Path idxPath, byte[] packChecksum) throws IOException {
+        written.sort(Comparator.comparing(w -> w.id));
+        int n = written.size();
+        ByteBuffer buf = ByteBuffer.allocate(8 + 256 * 4 + n * 28 + 40);
+        buf.put(PackFile.IDX_MAGIC).putInt(PackFile.VERSION);
+        int[] fanout = new int[256];
+        for (Written w : written)
+            fanout[w.id.firstByte()]++;
+        int running = 0;
+        for (int i = 0; i < 256; i++) {
+            running += fanout[i];
+            buf.putInt(running);
+        }
+        for (Written w : written)
+            w.id.copyRawTo(buf);
+        for (Written w : written)
+            buf.putLong(w.offset);
+        buf.put(packChecksum);
+        buf.put(Hasher.sha1(Arrays.copyOf(buf.array(), buf.position())));
+        Path tmpIdx = Files.createTempFile(packDir, "tmp_idx_", null);
+        Files.write(tmpIdx, buf.array());
+        Files.move(tmpIdx, idxPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long begin(ObjectId id, int type, long size, long baseOffset) {
+        long start = offset;
+        ByteArrayOutputStream h = new ByteArrayOutputStream(24);
+        h.write(type);
+        Delta.writeVarint(h, size);
+        if (baseOffset >= 0)
+            Delta.writeVarint(h, start - baseOffset);
+        write(h.toByteArray());
+        written.add(new Written(id, start));
+        return start;
+    }
+
+    private void deflate(byte[] data) {
+        try {
+            DeflaterOutputStream dos = new DeflaterOutputStream(new CountingStream(), deflater, 8192);
+            dos.write(data);
+            dos.finish();
+            deflater.reset();
+        } catch (IOException e) {
+            throw new RuntimeException("pack write failed");
+        }
+    }
+
+    private void write(byte[] b) {
+        try {
+            out.write(b);
+            offset += b.length;
+        } catch (IOException e) {
+            throw new RuntimeException("pack write failed");
+        }
+    }
+
+    private class CountingStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            offset++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            offset += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static class Written {
+        final ObjectId id;
+        final long offset;
+
+        Written(ObjectId id, long offset) {
+            this.id = id;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.jit.objects;
+
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+public class Repacker {
+    private static final int WINDOW = 10;
+    private static final int MAX_DEPTH = 10;
+    private static final long MAX_DELTA_SIZE = 16L * 1024 * 1024;
+
+    private final Repository repo;
+    private final ObjectStore store;
+
+    public Repacker(Repository repo, ObjectStore store) {
+        this.repo = repo;
+        this.store = store;
+    }
+
+    public static class Result {
+        public final String pack;
+        public final int objects;
+        public final int deltas;
+
+        Result(String pack, int objects, int deltas) {
+            this.pack = pack;
+            this.objects = objects;
+            this.deltas = deltas;
+        }
+    }
+
+    public Result repack(Collection<ObjectId> tips) {
+        List<PackFile> oldPacks = new ArrayList<>(store.packs());
+        List<ObjectId> loose = store.looseObjects();
+        Set<ObjectId> ids = new LinkedHashSet<>(loose);
+        for (PackFile pack : oldPacks)
+            for (int i = 0; i < pack.count(); i++)
+                ids.add(pack.idAt(i));
+        if (ids.isEmpty())
+            return new Result(null, 0, 0);
+
+        Map<ObjectId, String> names = nameHints(tips);
+        List<Candidate> commits = new ArrayList<>();
+        List<Candidate> trees = new ArrayList<>();
+        List<Candidate> blobs = new ArrayList<>();
+        for (ObjectId id : ids) {
+            ObjectStore.ObjectInfo info = store.readInfo(id);
+            Candidate c = new Candidate(id, info.type, info.size, names.getOrDefault(id, ""));
+            if (info.type.equals("commit"))
+                commits.add(c);
+            else if (info.type.equals("tree"))
+                trees.add(c);
+            else
+                blobs.add(c);
+        }
+        blobs.sort(Comparator.comparing((Candidate c) -> extension(c.name))
+                .thenComparing(c -> c.name)
+                .thenComparing(Comparator.comparingLong((Candidate c) -> c.size).reversed()));
+
+        int deltas = 0;
+        String name;
+        try (PackWriter w = new PackWriter(repo.packDir(), ids.size(),
+                repo.config().getInt("pack.compression", store.compressionLevel()))) {
+            for (Candidate c : commits)
+                w.addWhole(c.id, c.type, store.readObject(c.id).payload);
+            for (Candidate c : trees)
+                w.addWhole(c.id, c.type, store.readObject(c.id).payload);
+            Deque<Windowed> window = new ArrayDeque<>();
+            for (Candidate c : blobs) {
+                if (c.size > MAX_DELTA_SIZE) {
+                    try (ObjectStore.ObjectStream os = store.openObject(c.id)) {
+                        w.addWhole(c.id, c.type, os.size, os.stream());
+                    } catch (IOException e) {
+                        throw new RuntimeException("object read failed");
+                    }
+                    continue;
+                }
+                byte[] payload = store.readObject(c.id).payload;
+                Windowed best = null;
+                byte[] bestDelta = null;
+                for (Windowed base : window) {
+                    if (base.depth >= MAX_DEPTH || !similarSize(base.payload.length, payload.length))
+                        continue;
+                    byte[] d = Delta.create(base.payload, payload);
+                    if (bestDelta == null || d.length < bestDelta.length) {
+                        best = base;
+                        bestDelta = d;
+                    }
+                }
+                long offset;
+                int depth = 0;
+                if (bestDelta != null && bestDelta.length < payload.length / 2) {
+                    offset = w.addDelta(c.id, best.offset, payload.length, bestDelta);
+                    depth = best.depth + 1;
+                    deltas++;
+                } else {
+                    offset = w.addWhole(c.id, c.type, payload);
+                }
+                window.addFirst(new Windowed(payload, offset, depth));
+                if (window.size() > WINDOW)
+                    window.removeLast();
+            }
+            name = w.finish();
+        }
+
+        for (PackFile old : oldPacks) {
+            String oldName = old.path().getFileName().toString();
+            if (oldName.equals(name + ".pack"))
+                continue;
+            try {
+                Files.deleteIfExists(old.path().resolveSibling(oldName.replace(".pack", ".idx")));
+                Files.deleteIfExists(old.path());
+            } catch (IOException e) {
+                throw new RuntimeException("failed to remove old pack");
+            }
+        }
+        for (ObjectId id : loose)
+            store.deleteLoose(id);
+        store.reloadPacks();
+        return new Result(name, ids.size(), deltas);
+    }
+
+    private Map<ObjectId, String> nameHints(Collection<ObjectId> tips) {
+        Map<ObjectId, String> names = new HashMap<>();
+        Set<ObjectId> seenTrees = new HashSet<>();
+        Set<ObjectId> seenCommits = new HashSet<>();
+        CommitGraph graph = CommitGraph.open(repo);
+        for (ObjectId tip : tips) {
+            int pos = graph == null ? CommitGraph.NONE : graph.find(tip);
+            if (pos != CommitGraph.NONE) {
+                for (; pos != CommitGraph.NONE && seenCommits.add(graph.idAt(pos)); pos = graph.parentAt(pos))
+                    walkTree(graph.treeAt(pos), "", names, seenTrees);
+                continue;
+            }
+            ObjectId cur = tip;
+            while (cur != null && seenCommits.add(cur) && store.contains(cur)) {
+                Commit c = store.readCommit(cur);
+                if (c.tree != null)
+                    walkTree(c.tree, "", names, seenTrees);
+                cur = c.parent;
+            }
+        }
+        return names;
+    }
+
+    private void walkTree(ObjectId tree, String prefix, Map<ObjectId, String> names, Set<ObjectId> seen) {
+        if (!seen.add(tree) || !store.contains(tree))
+            return;
+        TreeCursor c = store.openTree(tree);
+        while (c.next()) {
+            String path = prefix.isEmpty() ? c.name() : prefix + "/" + c.name();
+            if (c.isTree())
+                walkTree(c.id(), path, names, seen);
+            else
+                names.putIfAbsent(c.id(), path);
+        }
+    }
+
+    private static boolean similarSize(long a, long b) {
+        long max = Math.max(a, b);
+        return Math.abs(a - b) <= max / 2;
+    }
+
+    private static String extension(String path) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? path.substring(dot) : "";
+    }
+
+    private static class Candidate {
+        final ObjectId id;
+        final String type;
+        final long size;
+        final String name;
+
+        Candidate(ObjectId id, String type, long size, String name) {
+            this.id = id;
+            this.type = type;
+            this.size = size;
+            this.name = name;
+        }
+    }
+
+    private static class Windowed {
+        final byte[] payload;
+        final long offset;
+        final int depth;
+
+        Windowed(byte[] payload, long offset, int depth) {
+            this.payload = payload;
+            this.offset = offset;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.jit.objects;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TreeCursor {
+    private final byte[] buf;
+    private final int start;
+    private final int end;
+    private int next;
+    private int mode;
+    private int nameOff;
+    private int nameLen;
+    private int idOff = -1;
+    private int[] offsets;
+    private int count = -1;
+
+    public TreeCursor(byte[] buf) {
+        this(buf, 0, buf.length);
+    }
+
+    public TreeCursor(byte[] buf, int off, int len) {
+        this.buf = buf;
+        this.start = off;
+        this.end = off + len;
+        this.next = off;
+    }
+
+    public boolean next() {
+        if (next >= end) {
+            idOff = -1;
+            return false;
+        }
+        parseAt(next);
+        return true;
+    }
+
+    public void reset() {
+        next = start;
+        idOff = -1;
+    }
+
+    public boolean lookup(String name) {
+        return lookup(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean lookup(byte[] name) {
+        if (count < 0)
+            index();
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            parseAt(offsets[mid]);
+            int cmp = Arrays.compareUnsigned(buf, nameOff, nameOff + nameLen, name, 0, name.length);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return true;
+        }
+        reset();
+        return false;
+    }
+
+    public int mode() {
+        return mode;
+    }
+
+    public boolean isTree() {
+        return mode == 040000;
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int nameOffset() {
+        return nameOff;
+    }
+
+    public int nameLength() {
+        return nameLen;
+    }
+
+    public int idOffset() {
+        return idOff;
+    }
+
+    public String name() {
+        return new String(buf, nameOff, nameLen, StandardCharsets.UTF_8);
+    }
+
+    public ObjectId id() {
+        return ObjectId.fromRaw(buf, idOff);
+    }
+
+    public int compareName(TreeCursor o) {
+        return Arrays.compareUnsigned(buf, nameOff, nameOff + nameLen, o.buf, o.nameOff, o.nameOff + o.nameLen);
+    }
+
+    public boolean idEquals(TreeCursor o) {
+        return Arrays.equals(buf, idOff, idOff + ObjectId.RAW_LENGTH, o.buf, o.idOff, o.idOff + ObjectId.RAW_LENGTH);
+    }
+
+    private void index() {
+        int[] offs = new int[16];
+        int n = 0;
+        for (int p = start; p < end; p = next) {
+            if (n == offs.length)
+                offs = Arrays.copyOf(offs, n * 2);
+            offs[n++] = p;
+            parseAt(p);
+        }
+        offsets = offs;
+        count = n;
+    }
+
+    private void parseAt(int p) {
+        int m = 0;
+        while (p < end && buf[p] != ' ') {
+            int d = buf[p++] - '0';
+            if (d < 0 || d > 7)
+                throw new RuntimeException("corrupt tree");
+            m = m << 3 | d;
+        }
+        int nul = p + 1;
+        while (nul < end && buf[nul] != 0)
+            nul++;
+        if (p >= end || nul + 1 + ObjectId.RAW_LENGTH > end)
+            throw new RuntimeException("corrupt tree");
+        mode = m;
+        nameOff = p + 1;
+        nameLen = nul - nameOff;
+        idOff = nul + 1;
+        next = idOff + ObjectId.RAW_LENGTH;
+    }
+}
@@ -0,0 +1,69 @@
+package com.jit.repo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class Config {
+    private final Path file;
+    private final Map<String, String> values = new TreeMap<>();
+
+    public Config(Path file) {
+        this.file = file;
+        load();
+    }
+
+    private void load() {
+        if (!Files.exists(file))
+            return;
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (String l : lines) {
+                String t = l.trim();
+                if (t.isEmpty() || t.startsWith("#"))
+                    continue;
+                int eq = t.indexOf('=');
+                if (eq < 0)
+                    continue;
+                values.put(t.substring(0, eq).trim(), t.substring(eq + 1).trim());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("config read failed");
+        }
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public int getInt(String key, int def) {
+        String v = values.get(key);
+        if (v == null)
+            return def;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("invalid integer for " + key + ": " + v);
+        }
+    }
+
+    public Map<String, String> all() {
+        return values;
+    }
+
+    public void set(String key, String value) {
+        values.put(key, value);
+        StringBuilder sb = new StringBuilder();
+        for (var e : values.entrySet())
+            sb.append(e.getKey()).append(" = ").append(e.getValue()).append("\n");
+        try {
+            Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("config write failed");
+        }
+    }
+}
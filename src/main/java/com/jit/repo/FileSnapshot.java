@@ -0,0 +1,51 @@
+package com.jit.repo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+public final class FileSnapshot {
+    private static final long RACY_MS = 2000;
+
+    private final Object key;
+    private final long mtime;
+    private final long size;
+    private final long taken;
+
+    private FileSnapshot(Object key, long mtime, long size, long taken) {
+        this.key = key;
+        this.mtime = mtime;
+        this.size = size;
+        this.taken = taken;
+    }
+
+    public static FileSnapshot of(Path p) {
+        long now = System.currentTimeMillis();
+        try {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new FileSnapshot(a.fileKey(), a.lastModifiedTime().toMillis(), a.size(), now);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public boolean isRacy() {
+        return mtime >= taken - RACY_MS;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FileSnapshot))
+            return false;
+        FileSnapshot s = (FileSnapshot) o;
+        return Objects.equals(key, s.key) && mtime == s.mtime && size == s.size;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, mtime, size);
+    }
+}
@@ -1,5 +1,7 @@
 package com.jit.repo;
 
+import com.jit.objects.ObjectId;
+
 public class Head {
     private final RefStore refs;
 
@@ -15,7 +17,7 @@ public class Head {
         return refs.headTargetRef();
     }
 
-    public String currentCommit() {
+    public ObjectId currentCommit() {
         return refs.resolveHeadCommit();
     }
 }
@@ -0,0 +1,113 @@
+package com.jit.repo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class LockFile implements Closeable {
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    private static final long MAX_BACKOFF_MS = 64;
+
+    private final Path target;
+    private final Path lock;
+    private FileChannel ch;
+    private boolean done;
+
+    private LockFile(Path target, Path lock, FileChannel ch) {
+        this.target = target;
+        this.lock = lock;
+        this.ch = ch;
+    }
+
+    public static Path lockPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".lock");
+    }
+
+    public static LockFile acquire(Path target) {
+        return acquire(target, DEFAULT_TIMEOUT_MS);
+    }
+
+    public static LockFile acquire(Path target, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long backoff = 1;
+        while (true) {
+            LockFile l = tryAcquire(target);
+            if (l != null)
+                return l;
+            if (System.currentTimeMillis() >= deadline)
+                throw new RuntimeException("unable to lock " + target.getFileName() + ": " + lockPath(target)
+                        + " exists; another jit process may be running");
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while locking " + target.getFileName());
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    public static LockFile tryAcquire(Path target) {
+        Path lock = lockPath(target);
+        try {
+            Files.createDirectories(lock.getParent());
+            return new LockFile(target, lock, FileChannel.open(lock, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE));
+        } catch (FileAlreadyExistsException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("unable to create " + lock.getFileName());
+        }
+    }
+
+    public Path target() {
+        return target;
+    }
+
+    public void write(byte[] data) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            while (buf.hasRemaining())
+                ch.write(buf);
+        } catch (IOException e) {
+            throw new RuntimeException("failed to write " + lock.getFileName());
+        }
+    }
+
+    public void sync() {
+        try {
+            ch.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("failed to sync " + lock.getFileName());
+        }
+    }
+
+    public void commit() {
+        try {
+            ch.close();
+            Files.move(lock, target, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+        } catch (IOException e) {
+            throw new RuntimeException("failed to update " + target.getFileName());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (done)
+            return;
+        done = true;
+        try {
+            ch.close();
+            Files.deleteIfExists(lock);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.jit.repo;
+
+import com.jit.objects.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PackedRefs {
+    static final String HEADER = "# jit packed-refs\n";
+    static final PackedRefs EMPTY = new PackedRefs(HEADER.getBytes(StandardCharsets.US_ASCII));
+
+    private static final int NAME_OFFSET = ObjectId.HEX_LENGTH + 1;
+
+    private final byte[] buf;
+    private final int start;
+
+    private PackedRefs(byte[] buf) {
+        this.buf = buf;
+        this.start = HEADER.length();
+    }
+
+    public static PackedRefs parse(byte[] buf) {
+        byte[] header = HEADER.getBytes(StandardCharsets.US_ASCII);
+        if (buf.length < header.length || !Arrays.equals(buf, 0, header.length, header, 0, header.length))
+            throw new RuntimeException("corrupt packed-refs");
+        if (buf.length > header.length && buf[buf.length - 1] != '\n')
+            throw new RuntimeException("corrupt packed-refs");
+        return new PackedRefs(buf);
+    }
+
+    public ObjectId find(String ref) {
+        byte[] name = ref.getBytes(StandardCharsets.UTF_8);
+        int lo = start;
+        int hi = buf.length;
+        while (lo < hi) {
+            int line = lineStart(lo + (hi - lo) / 2, lo);
+            int nameOff = line + NAME_OFFSET;
+            int end = lineEnd(line);
+            if (nameOff > end)
+                throw new RuntimeException("corrupt packed-refs");
+            int cmp = Arrays.compareUnsigned(buf, nameOff, end, name, 0, name.length);
+            if (cmp == 0)
+                return ObjectId.fromHex(new String(buf, line, ObjectId.HEX_LENGTH, StandardCharsets.US_ASCII));
+            if (cmp < 0)
+                lo = end + 1;
+            else
+                hi = line;
+        }
+        return null;
+    }
+
+    public Map<String, ObjectId> refs(String prefix) {
+        Map<String, ObjectId> out = new LinkedHashMap<>();
+        for (int line = start; line < buf.length; ) {
+            int end = lineEnd(line);
+            if (line + NAME_OFFSET > end)
+                throw new RuntimeException("corrupt packed-refs");
+            String name = new String(buf, line + NAME_OFFSET, end - line - NAME_OFFSET, StandardCharsets.UTF_8);
+            if (name.startsWith(prefix))
+                out.put(name, ObjectId.fromHex(new String(buf, line, ObjectId.HEX_LENGTH, StandardCharsets.US_ASCII)));
+            line = end + 1;
+        }
+        return out;
+    }
+
+    public static byte[] format(Map<String, ObjectId> refs) {
+        List<byte[]> names = new ArrayList<>(refs.size());
+        for (String name : refs.keySet())
+            names.add(name.getBytes(StandardCharsets.UTF_8));
+        names.sort(Arrays::compareUnsigned);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER.length() + refs.size() * 64);
+        out.writeBytes(HEADER.getBytes(StandardCharsets.US_ASCII));
+        for (byte[] name : names) {
+            ObjectId id = refs.get(new String(name, StandardCharsets.UTF_8));
+            out.writeBytes(id.name().getBytes(StandardCharsets.US_ASCII));
+            out.write(' ');
+            out.writeBytes(name);
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private int lineStart(int p, int floor) {
+        while (p > floor && buf[p - 1] != '\n')
+            p--;
+        return p;
+    }
+
+    private int lineEnd(int p) {
+        while (buf[p] != '\n')
+            p++;
+        return p;
+    }
+}
@@ -1,24 +1,36 @@
 package com.jit.repo;
 
+import com.jit.objects.ObjectId;
+
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class RefStore {
+    private static final Map<Path, Snapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+
     private final Repository repo;
+    private final Reflog reflog;
 
     public RefStore(Repository repo) {
         this.repo = repo;
+        this.reflog = new Reflog(repo);
     }
 
     public String readHead() {
-        try {
-            return Files.readString(repo.headFile(), StandardCharsets.UTF_8).trim();
-        } catch (IOException e) {
+        String head = cached(repo.headFile(), b -> new String(b, StandardCharsets.UTF_8).trim());
+        if (head == null)
             throw new RuntimeException("failed to read HEAD");
-        }
+        return head;
     }
 
     public boolean isHeadSymbolic() {
@@ -33,56 +45,269 @@ public class RefStore {
     }
 
     public String readRef(String ref) {
-        try {
-            Path p = repo.getJitDir().resolve(ref);
-            if (!Files.exists(p))
-                return null;
-            return Files.readString(p, StandardCharsets.UTF_8).trim();
+        Path p = repo.getJitDir().resolve(ref);
+        if (Files.exists(p)) {
+            try {
+                return Files.readString(p, StandardCharsets.UTF_8).trim();
+            } catch (NoSuchFileException e) {
+                // packed and pruned since the check
+            } catch (IOException e) {
+                throw new RuntimeException("failed to read ref");
+            }
+        }
+        ObjectId id = packedRefs().find(ref);
+        return id == null ? null : id.name();
+    }
+
+    public ObjectId resolveRef(String ref) {
+        String v = readRef(ref);
+        return v == null || v.isBlank() ? null : ObjectId.fromHex(v);
+    }
+
+    public Map<String, ObjectId> listRefs() {
+        Map<String, String> loose = looseRefs(repo.refsHeadsDir());
+        Map<String, ObjectId> out = new TreeMap<>(packedRefs().refs("refs/heads/"));
+        for (Map.Entry<String, String> e : loose.entrySet()) {
+            if (e.getValue().isEmpty())
+                out.remove(e.getKey());
+            else
+                out.put(e.getKey(), ObjectId.fromHex(e.getValue()));
+        }
+        return out;
+    }
+
+    public PackedRefs packedRefs() {
+        PackedRefs packed = cached(repo.packedRefsFile(), PackedRefs::parse);
+        return packed == null ? PackedRefs.EMPTY : packed;
+    }
+
+    public int packRefs() {
+        Map<String, String> loose;
+        try (LockFile packed = lockPacked()) {
+            loose = looseRefs();
+            loose.values().removeIf(String::isEmpty);
+            Map<String, ObjectId> all = new TreeMap<>(packedRefs().refs(""));
+            for (Map.Entry<String, String> e : loose.entrySet())
+                all.put(e.getKey(), ObjectId.fromHex(e.getValue()));
+            writePacked(packed, all, false);
+        }
+        for (Map.Entry<String, String> e : loose.entrySet())
+            pruneLoose(e.getKey(), e.getValue());
+        return loose.size();
+    }
+
+    public RefTransaction transaction(String reason) {
+        return new RefTransaction(this, reason);
+    }
+
+    public void writeRef(String ref, ObjectId id, String reason) {
+        try (LockFile lock = LockFile.acquire(looseFile(ref))) {
+            ObjectId old = resolveRef(ref);
+            commitRef(lock, id);
+            logUpdate(ref, old, id, reason);
+        }
+    }
+
+    public boolean compareAndSet(String ref, ObjectId expected, ObjectId id, String reason) {
+        try (LockFile lock = LockFile.acquire(looseFile(ref))) {
+            if (!Objects.equals(resolveRef(ref), expected))
+                return false;
+            commitRef(lock, id);
+            logUpdate(ref, expected, id, reason);
+            return true;
+        }
+    }
+
+    public boolean createRef(String ref, ObjectId id, String reason) {
+        try (LockFile lock = LockFile.acquire(looseFile(ref))) {
+            if (readRef(ref) != null)
+                return false;
+            commitRef(lock, id);
+            logUpdate(ref, null, id, reason);
+            return true;
+        }
+    }
+
+    public void setHeadSymbolic(String ref, String reason) {
+        try (LockFile lock = LockFile.acquire(repo.headFile())) {
+            ObjectId old = resolveHeadCommit();
+            lock.write(("ref: " + ref + "\n").getBytes(StandardCharsets.UTF_8));
+            lock.commit();
+            logHead(old, resolveRef(ref), reason);
+        }
+    }
+
+    public void setHeadDetached(ObjectId id, String reason) {
+        try (LockFile lock = LockFile.acquire(repo.headFile())) {
+            ObjectId old = resolveHeadCommit();
+            lock.write((id.name() + "\n").getBytes(StandardCharsets.UTF_8));
+            lock.commit();
+            logHead(old, id, reason);
+        }
+    }
+
+    public boolean compareAndSetHead(ObjectId expected, ObjectId id, String reason) {
+        try (LockFile lock = LockFile.acquire(repo.headFile())) {
+            String v = readHead();
+            if (v.startsWith("ref: ") || !Objects.equals(v.isEmpty() ? null : ObjectId.fromHex(v), expected))
+                return false;
+            lock.write((id.name() + "\n").getBytes(StandardCharsets.UTF_8));
+            lock.commit();
+            logHead(expected, id, reason);
+            return true;
+        }
+    }
+
+    void logUpdate(String ref, ObjectId old, ObjectId id, String reason) {
+        if (old == null && id == null)
+            return;
+        reflog.append(ref, old, id, reason);
+        if (ref.equals(headTargetRef()))
+            reflog.append("HEAD", old, id, reason);
+    }
+
+    private void logHead(ObjectId old, ObjectId id, String reason) {
+        if (old != null || id != null)
+            reflog.append("HEAD", old, id, reason);
+    }
+
+    private static void commitRef(LockFile lock, ObjectId id) {
+        lock.write(((id == null ? "" : id.name()) + "\n").getBytes(StandardCharsets.UTF_8));
+        lock.commit();
+    }
+
+    LockFile lockPacked() {
+        return LockFile.acquire(repo.packedRefsFile());
+    }
+
+    Path looseFile(String ref) {
+        return repo.getJitDir().resolve(ref);
+    }
+
+    Map<String, String> looseRefs() {
+        return looseRefs(repo.getJitDir().resolve("refs"));
+    }
+
+    static void writePacked(LockFile lock, Map<String, ObjectId> refs, boolean sync) {
+        lock.write(PackedRefs.format(refs));
+        if (sync)
+            lock.sync();
+        lock.commit();
+    }
+
+    Reflog reflog() {
+        return reflog;
+    }
+
+    private void pruneLoose(String ref, String packed) {
+        try (LockFile lock = LockFile.tryAcquire(looseFile(ref))) {
+            if (lock == null)
+                return;
+            if (packed.equals(Files.readString(looseFile(ref), StandardCharsets.UTF_8).trim()))
+                Files.delete(looseFile(ref));
+        } catch (NoSuchFileException e) {
+            // already pruned by another writer
         } catch (IOException e) {
-            throw new RuntimeException("failed to read ref");
+            throw new RuntimeException("failed to delete " + ref);
         }
+        pruneDirs(ref);
     }
 
-    public void writeRef(String ref, String value) {
+    void pruneDirs(String ref) {
         try {
-            Path p = repo.getJitDir().resolve(ref);
-            Files.createDirectories(p.getParent());
-            Files.writeString(p, value + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING);
+            pruneEmptyDirs(looseFile(ref).getParent());
         } catch (IOException e) {
-            throw new RuntimeException("failed to write ref");
+            throw new RuntimeException("failed to delete " + ref);
         }
     }
 
-    public void setHeadSymbolic(String ref) {
+    void deleteLoose(String ref) {
+        Path p = looseFile(ref);
         try {
-            Files.writeString(repo.headFile(), "ref: " + ref + "\n", StandardCharsets.UTF_8,
-                    StandardOpenOption.TRUNCATE_EXISTING);
+            if (Files.deleteIfExists(p))
+                pruneEmptyDirs(p.getParent());
         } catch (IOException e) {
-            throw new RuntimeException("failed to set HEAD");
+            throw new RuntimeException("failed to delete " + ref);
+        }
+    }
+
+    private Map<String, String> looseRefs(Path dir) {
+        Map<String, String> out = new TreeMap<>();
+        if (!Files.isDirectory(dir))
+            return out;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(p) || p.getFileName().toString().endsWith(".lock"))
+                    continue;
+                String ref = repo.getJitDir().relativize(p).toString().replace('\\', '/');
+                try {
+                    out.put(ref, Files.readString(p, StandardCharsets.UTF_8).trim());
+                } catch (NoSuchFileException e) {
+                    // packed and pruned while walking
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("failed to list refs");
+        }
+        return out;
+    }
+
+    private void pruneEmptyDirs(Path dir) throws IOException {
+        Path stop = repo.refsHeadsDir();
+        while (dir.startsWith(stop) && !dir.equals(stop)) {
+            try {
+                Files.delete(dir);
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            } catch (NoSuchFileException e) {
+                // removed by another writer
+            }
+            dir = dir.getParent();
         }
     }
 
-    public void setHeadDetached(String hash) {
+    @SuppressWarnings("unchecked")
+    private static <T> T cached(Path p, Function<byte[], T> parse) {
+        FileSnapshot snap = FileSnapshot.of(p);
+        if (snap == null) {
+            SNAPSHOTS.remove(p);
+            return null;
+        }
+        Snapshot s = SNAPSHOTS.get(p);
+        if (s != null && s.file.equals(snap))
+            return (T) s.value;
+        byte[] data;
         try {
-            Files.writeString(repo.headFile(), hash + "\n", StandardCharsets.UTF_8,
-                    StandardOpenOption.TRUNCATE_EXISTING);
+            data = Files.readAllBytes(p);
+        } catch (NoSuchFileException e) {
+            return null;
         } catch (IOException e) {
-            throw new RuntimeException("failed to set HEAD");
+            throw new RuntimeException("failed to read " + p.getFileName());
         }
+        T value = parse.apply(data);
+        if (snap.isRacy())
+            SNAPSHOTS.remove(p);
+        else
+            SNAPSHOTS.put(p, new Snapshot(snap, value));
+        return value;
     }
 
-    public String resolveHeadCommit() {
-        String v = readHead();
-        if (v.startsWith("ref: ")) {
-            String ref = v.substring(5);
-            String h = readRef(ref);
-            if (h == null || h.isBlank())
-                return null;
-            return h;
+    private static class Snapshot {
+        final FileSnapshot file;
+        final Object value;
+
+        Snapshot(FileSnapshot file, Object value) {
+            this.file = file;
+            this.value = value;
         }
+    }
+
+    public ObjectId resolveHeadCommit() {
+        String v = readHead();
+        if (v.startsWith("ref: "))
+            return resolveRef(v.substring(5));
         if (v.isBlank())
             return null;
-        return v;
+        return ObjectId.fromHex(v);
     }
 }
@@ -0,0 +1,207 @@
+package com.jit.repo;
+
+import com.jit.objects.ObjectId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class RefTransaction {
+    private enum Kind { CREATE, UPDATE, DELETE, VERIFY }
+
+    private static class Op {
+        final Kind kind;
+        final String ref;
+        final ObjectId id;
+        final ObjectId expected;
+        final boolean check;
+
+        Op(Kind kind, String ref, ObjectId id, ObjectId expected, boolean check) {
+            this.kind = kind;
+            this.ref = ref;
+            this.id = id;
+            this.expected = expected;
+            this.check = check;
+        }
+    }
+
+    private final RefStore refs;
+    private final String reason;
+    private final List<Op> ops = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private boolean committed;
+
+    RefTransaction(RefStore refs, String reason) {
+        this.refs = refs;
+        this.reason = reason;
+    }
+
+    public RefTransaction create(String ref, ObjectId id) {
+        return add(new Op(Kind.CREATE, ref, Objects.requireNonNull(id), null, true));
+    }
+
+    public RefTransaction update(String ref, ObjectId id) {
+        return add(new Op(Kind.UPDATE, ref, Objects.requireNonNull(id), null, false));
+    }
+
+    public RefTransaction update(String ref, ObjectId id, ObjectId expected) {
+        return add(new Op(Kind.UPDATE, ref, Objects.requireNonNull(id), expected, true));
+    }
+
+    public RefTransaction delete(String ref) {
+        return add(new Op(Kind.DELETE, ref, null, null, false));
+    }
+
+    public RefTransaction delete(String ref, ObjectId expected) {
+        return add(new Op(Kind.DELETE, ref, null, Objects.requireNonNull(expected), true));
+    }
+
+    public RefTransaction verify(String ref, ObjectId expected) {
+        return add(new Op(Kind.VERIFY, ref, null, expected, true));
+    }
+
+    public int size() {
+        return ops.size();
+    }
+
+    public void commit() {
+        if (committed)
+            throw new RuntimeException("transaction already committed");
+        committed = true;
+        if (ops.isEmpty())
+            return;
+        List<LockFile> locks = new ArrayList<>();
+        try {
+            for (String name : new TreeSet<>(names))
+                locks.add(LockFile.acquire(refs.looseFile(name)));
+            locks.add(refs.lockPacked());
+            Map<String, String> loose = refs.looseRefs();
+            Map<String, ObjectId> packed = refs.packedRefs().refs("");
+            Map<String, ObjectId> old = new HashMap<>();
+            for (Op op : ops)
+                old.put(op.ref, check(op, current(op.ref, loose, packed)));
+            Map<String, ObjectId> next = apply(packed);
+            TreeSet<String> all = new TreeSet<>(next.keySet());
+            for (String name : loose.keySet())
+                if (!names.contains(name))
+                    all.add(name);
+            for (Op op : ops)
+                if (op.kind == Kind.CREATE || op.kind == Kind.UPDATE)
+                    checkConflict(op.ref, all);
+            List<String> shadowing = new ArrayList<>();
+            for (Op op : ops)
+                if (op.kind != Kind.VERIFY && loose.containsKey(op.ref))
+                    shadowing.add(op.ref);
+            LockFile packedLock = locks.get(locks.size() - 1);
+            if (!shadowing.isEmpty()) {
+                Map<String, ObjectId> folded = new TreeMap<>(packed);
+                for (String ref : shadowing) {
+                    String v = loose.get(ref);
+                    if (v.isEmpty())
+                        folded.remove(ref);
+                    else
+                        folded.put(ref, ObjectId.fromHex(v));
+                }
+                RefStore.writePacked(packedLock, folded, true);
+                for (String ref : shadowing)
+                    refs.deleteLoose(ref);
+                packedLock = refs.lockPacked();
+                locks.add(packedLock);
+                next = apply(refs.packedRefs().refs(""));
+            }
+            RefStore.writePacked(packedLock, next, true);
+            String head = refs.headTargetRef();
+            Reflog reflog = refs.reflog();
+            for (Op op : ops) {
+                if (op.kind == Kind.DELETE)
+                    reflog.delete(op.ref);
+                else if (op.kind != Kind.VERIFY)
+                    reflog.append(op.ref, old.get(op.ref), op.id, reason);
+                if (op.kind != Kind.VERIFY && op.ref.equals(head))
+                    reflog.append("HEAD", old.get(op.ref), op.id, reason);
+            }
+        } finally {
+            for (LockFile lock : locks)
+                lock.close();
+            for (String name : names)
+                refs.pruneDirs(name);
+        }
+    }
+
+    private Map<String, ObjectId> apply(Map<String, ObjectId> packed) {
+        Map<String, ObjectId> out = new TreeMap<>(packed);
+        for (Op op : ops) {
+            if (op.kind == Kind.DELETE)
+                out.remove(op.ref);
+            else if (op.kind != Kind.VERIFY)
+                out.put(op.ref, op.id);
+        }
+        return out;
+    }
+
+    public static void checkName(String ref) {
+        boolean ok = ref.startsWith("refs/") && !ref.endsWith("/") && !ref.endsWith(".lock") && !ref.contains("//")
+                && !ref.contains("..") && !ref.contains("/.");
+        for (int i = 0; ok && i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            ok = c > ' ' && c != 0x7f && c != '~' && c != '^' && c != ':' && c != '?' && c != '*' && c != '['
+                    && c != '\\';
+        }
+        if (!ok)
+            throw new RuntimeException("invalid ref name: " + ref);
+    }
+
+    private RefTransaction add(Op op) {
+        if (committed)
+            throw new RuntimeException("transaction already committed");
+        checkName(op.ref);
+        if (!names.add(op.ref))
+            throw new RuntimeException("multiple updates for ref " + op.ref);
+        ops.add(op);
+        return this;
+    }
+
+    private static String current(String ref, Map<String, String> loose, Map<String, ObjectId> packed) {
+        String v = loose.get(ref);
+        if (v != null)
+            return v;
+        ObjectId id = packed.get(ref);
+        return id == null ? null : id.name();
+    }
+
+    private static ObjectId check(Op op, String cur) {
+        ObjectId id = cur == null || cur.isEmpty() ? null : ObjectId.fromHex(cur);
+        switch (op.kind) {
+            case CREATE:
+                if (cur != null)
+                    throw new RuntimeException("cannot create " + op.ref + ": reference already exists");
+                break;
+            case DELETE:
+                if (cur == null)
+                    throw new RuntimeException("cannot delete " + op.ref + ": reference does not exist");
+                break;
+            default:
+                break;
+        }
+        if (op.check && !Objects.equals(id, op.expected))
+            throw new RuntimeException("cannot update " + op.ref + ": expected "
+                    + (op.expected == null ? "no value" : op.expected.name()) + " but found "
+                    + (id == null ? "no value" : id.name()));
+        return id;
+    }
+
+    private static void checkConflict(String ref, TreeSet<String> all) {
+        String child = all.ceiling(ref + "/");
+        if (child != null && child.startsWith(ref + "/"))
+            throw new RuntimeException("cannot create " + ref + ": " + child + " exists");
+        for (int slash = ref.indexOf('/'); slash >= 0; slash = ref.indexOf('/', slash + 1))
+            if (all.contains(ref.substring(0, slash)))
+                throw new RuntimeException("cannot create " + ref + ": " + ref.substring(0, slash) + " exists");
+    }
+}
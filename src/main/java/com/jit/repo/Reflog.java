@@ -0,0 +1,119 @@
+package com.jit.repo;
+
+import com.jit.objects.ObjectId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Reflog {
+    private static final String ZERO = "0".repeat(ObjectId.HEX_LENGTH);
+
+    public static class Entry {
+        public final ObjectId old;
+        public final ObjectId id;
+        public final String timestamp;
+        public final String reason;
+
+        public Entry(ObjectId old, ObjectId id, String timestamp, String reason) {
+            this.old = old;
+            this.id = id;
+            this.timestamp = timestamp;
+            this.reason = reason;
+        }
+    }
+
+    private final Repository repo;
+
+    public Reflog(Repository repo) {
+        this.repo = repo;
+    }
+
+    public Path file(String ref) {
+        return repo.logsDir().resolve(ref);
+    }
+
+    public void append(String ref, ObjectId old, ObjectId id, String reason) {
+        String line = name(old) + " " + name(id) + " "
+                + DateTimeFormatter.ISO_INSTANT.withZone(ZoneOffset.UTC).format(Instant.now()) + "\t"
+                + reason.replace('\n', ' ') + "\n";
+        ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        Path p = file(ref);
+        try (FileChannel ch = openAppend(p)) {
+            ch.write(buf);
+        } catch (IOException e) {
+            throw new RuntimeException("failed to write reflog for " + ref);
+        }
+    }
+
+    public void delete(String ref) {
+        try {
+            Files.deleteIfExists(file(ref));
+        } catch (IOException e) {
+            throw new RuntimeException("failed to delete reflog for " + ref);
+        }
+    }
+
+    public List<Entry> read(String ref, int max) {
+        List<Entry> out = new ArrayList<>();
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file(ref), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE)
+                throw new RuntimeException("reflog too large: " + ref);
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (NoSuchFileException e) {
+            return out;
+        } catch (IOException e) {
+            throw new RuntimeException("failed to read reflog for " + ref);
+        }
+        int end = buf.limit();
+        while (end > 0 && out.size() < max) {
+            int start = end - 1;
+            while (start > 0 && buf.get(start - 1) != '\n')
+                start--;
+            if (end - 1 > start)
+                out.add(parse(buf, start, end - 1));
+            end = start;
+        }
+        return out;
+    }
+
+    private static Entry parse(ByteBuffer buf, int start, int end) {
+        byte[] b = new byte[end - start];
+        buf.get(start, b);
+        String line = new String(b, StandardCharsets.UTF_8);
+        int tab = line.indexOf('\t');
+        String[] p = (tab < 0 ? line : line.substring(0, tab)).split(" ");
+        if (p.length != 3)
+            throw new RuntimeException("corrupt reflog");
+        return new Entry(id(p[0]), id(p[1]), p[2], tab < 0 ? "" : line.substring(tab + 1));
+    }
+
+    private static FileChannel openAppend(Path p) throws IOException {
+        try {
+            return FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(p.getParent());
+            return FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static String name(ObjectId id) {
+        return id == null ? ZERO : id.name();
+    }
+
+    private static ObjectId id(String hex) {
+        return hex.equals(ZERO) ? null : ObjectId.fromHex(hex);
+    }
+}
@@ -9,6 +9,7 @@ import java.nio.file.StandardOpenOption;
 public class Repository {
     private final Path workTree;
     private final Path jitDir;
+    private Config config;
     public static final String JIT_DIR = ".jit";
 
     public Repository(Path workTree) {
@@ -28,10 +29,30 @@ public class Repository {
         return jitDir.resolve("objects");
     }
 
+    public Path packDir() {
+        return objectsDir().resolve("pack");
+    }
+
+    public Path commitGraphFile() {
+        return objectsDir().resolve("info").resolve("commit-graph");
+    }
+
+    public Path objectFilterFile() {
+        return objectsDir().resolve("info").resolve("object-filter");
+    }
+
     public Path refsHeadsDir() {
         return jitDir.resolve("refs").resolve("heads");
     }
 
+    public Path logsDir() {
+        return jitDir.resolve("logs");
+    }
+
+    public Path packedRefsFile() {
+        return jitDir.resolve("packed-refs");
+    }
+
     public Path headFile() {
         return jitDir.resolve("HEAD");
     }
@@ -40,6 +61,24 @@ public class Repository {
         return jitDir.resolve("index");
     }
 
+    public Path fsmonitorDir() {
+        return jitDir.resolve("fsmonitor");
+    }
+
+    public Path serverDir() {
+        return jitDir.resolve("server");
+    }
+
+    public Path configFile() {
+        return jitDir.resolve("config");
+    }
+
+    public synchronized Config config() {
+        if (config == null)
+            config = new Config(configFile());
+        return config;
+    }
+
     public boolean isInitialized() {
         return Files.isDirectory(jitDir) && Files.isDirectory(objectsDir()) && Files.exists(headFile());
     }
@@ -0,0 +1,90 @@
+package com.jit.server;
+
+import com.jit.repo.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+public class JitClient {
+    private static final Set<String> FORWARDED = Set.of("status", "add", "log", "checkout", "branch", "switch",
+            "cat-file", "ls-tree", "commit-graph", "object-filter", "pack-refs", "reflog", "gc", "repack");
+
+    public static Integer tryForward(String[] args) {
+        if (args.length == 0 || !FORWARDED.contains(args[0]) || System.getenv("JIT_NO_SERVER") != null)
+            return null;
+        for (String a : args)
+            if (a.startsWith("--batch") || a.equals("--stdin"))
+                return null;
+        Path cwd = Paths.get("").toAbsolutePath().normalize();
+        Repository repo;
+        try {
+            repo = Repository.findRepo(cwd);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        Path sock = JitServer.socketFile(repo);
+        if (!repo.getWorkTree().equals(cwd) || !Files.exists(sock))
+            return null;
+        SocketChannel ch;
+        try {
+            ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+            ch.connect(UnixDomainSocketAddress.of(sock));
+        } catch (IOException e) {
+            return null;
+        }
+        try (ch) {
+            DataOutputStream req = new DataOutputStream(Channels.newOutputStream(ch));
+            req.writeInt(args.length);
+            for (String a : args)
+                req.writeUTF(a);
+            req.flush();
+            return relay(new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch))));
+        } catch (IOException e) {
+            System.err.println("server connection lost");
+            return 1;
+        }
+    }
+
+    private static int relay(DataInputStream in) throws IOException {
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        OutputStream err = new FileOutputStream(FileDescriptor.err);
+        byte[] buf = new byte[8192];
+        while (true) {
+            int stream;
+            try {
+                stream = in.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new IOException("truncated response");
+            }
+            if (stream == JitServer.EXIT)
+                return in.readInt();
+            int len = in.readInt();
+            OutputStream dst = stream == JitServer.STDERR ? err : out;
+            while (len > 0) {
+                int n = in.read(buf, 0, Math.min(len, buf.length));
+                if (n < 0)
+                    throw new IOException("truncated response");
+                try {
+                    dst.write(buf, 0, n);
+                } catch (IOException e) {
+                    return 0;
+                }
+                len -= n;
+            }
+        }
+    }
+}
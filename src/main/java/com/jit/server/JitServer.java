@@ -0,0 +1,147 @@
+package com.jit.server;
+
+import com.jit.cli.Jit;
+import com.jit.repo.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public class JitServer {
+    static final int EXIT = 0;
+    static final int STDOUT = 1;
+    static final int STDERR = 2;
+    private static final int FRAME_BUFFER = 64 * 1024;
+
+    private final Repository repo;
+
+    public JitServer(Repository repo) {
+        this.repo = repo;
+    }
+
+    public static Path socketFile(Repository repo) {
+        return repo.serverDir().resolve("sock");
+    }
+
+    public static Path pidFile(Repository repo) {
+        return repo.serverDir().resolve("pid");
+    }
+
+    public static boolean isRunning(Repository repo) {
+        return readPid(repo) > 0;
+    }
+
+    public static long readPid(Repository repo) {
+        long pid;
+        try {
+            pid = Long.parseLong(Files.readString(pidFile(repo), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        Optional<ProcessHandle> ph = ProcessHandle.of(pid);
+        return ph.isPresent() && ph.get().isAlive() ? pid : -1;
+    }
+
+    public void run() {
+        Path sock = socketFile(repo);
+        ServerSocketChannel server;
+        try {
+            Files.createDirectories(repo.serverDir());
+            Files.deleteIfExists(sock);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(sock));
+            Files.writeString(pidFile(repo), ProcessHandle.current().pid() + "\n", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("server failed to start");
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(sock);
+                Files.deleteIfExists(pidFile(repo));
+            } catch (IOException ignored) {
+            }
+        }));
+        RepoCache.enable();
+        while (true) {
+            try (SocketChannel client = server.accept()) {
+                serve(client);
+            } catch (IOException e) {
+                // client went away; wait for the next one
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++)
+            args[i] = in.readUTF();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        PrintStream cmdOut = new PrintStream(new BufferedOutputStream(new FrameStream(out, STDOUT), FRAME_BUFFER));
+        PrintStream cmdErr = new PrintStream(new FrameStream(out, STDERR), true);
+        int code = 1;
+        boolean ok = false;
+        System.setOut(cmdOut);
+        System.setErr(cmdErr);
+        try {
+            RepoCache.begin(repo);
+            code = Jit.run(args);
+            ok = code == 0;
+        } catch (Throwable t) {
+            RepoCache.clear();
+            cmdErr.println(t);
+        } finally {
+            cmdOut.flush();
+            cmdErr.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            RepoCache.end(repo, ok);
+        }
+        out.writeByte(EXIT);
+        out.writeInt(code);
+        out.flush();
+    }
+
+    private static class FrameStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int stream;
+
+        FrameStream(DataOutputStream out, int stream) {
+            this.out = out;
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return;
+            out.writeByte(stream);
+            out.writeInt(len);
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
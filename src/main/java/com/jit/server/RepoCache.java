@@ -0,0 +1,74 @@
+package com.jit.server;
+
+import com.jit.index.Index;
+import com.jit.objects.CachingObjectStore;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.FileSnapshot;
+import com.jit.repo.Repository;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+public class RepoCache {
+    private static boolean enabled;
+    private static Path jitDir;
+    private static CachingObjectStore store;
+    private static Index index;
+    private static FileSnapshot config;
+    private static FileSnapshot packs;
+    private static FileSnapshot indexFile;
+
+    public static synchronized ObjectStore objects(Repository repo) {
+        if (!enabled)
+            return new CachingObjectStore(repo);
+        if (store == null || !repo.getJitDir().equals(jitDir)) {
+            clear();
+            jitDir = repo.getJitDir();
+            store = new CachingObjectStore(repo);
+        }
+        return store;
+    }
+
+    public static synchronized Index index(Repository repo, ObjectStore objects) {
+        if (!enabled || objects != store)
+            return new Index(repo, objects);
+        if (index == null)
+            index = new Index(repo, objects);
+        return index;
+    }
+
+    static synchronized void enable() {
+        enabled = true;
+    }
+
+    static synchronized void begin(Repository repo) {
+        if (store == null || !repo.getJitDir().equals(jitDir))
+            return;
+        if (changed(config, repo.configFile())) {
+            clear();
+            return;
+        }
+        if (changed(packs, repo.packDir()))
+            store.reloadPacks();
+        if (changed(indexFile, repo.indexFile()))
+            index = null;
+    }
+
+    static synchronized void end(Repository repo, boolean ok) {
+        if (!ok)
+            index = null;
+        config = FileSnapshot.of(repo.configFile());
+        packs = FileSnapshot.of(repo.packDir());
+        indexFile = FileSnapshot.of(repo.indexFile());
+    }
+
+    private static boolean changed(FileSnapshot seen, Path p) {
+        return seen != null && seen.isRacy() || !Objects.equals(seen, FileSnapshot.of(p));
+    }
+
+    static synchronized void clear() {
+        store = null;
+        index = null;
+        jitDir = null;
+    }
+}
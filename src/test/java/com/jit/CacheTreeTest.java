@@ -0,0 +1,73 @@
+package com.jit;
+
+import com.jit.index.CacheTree;
+import com.jit.index.Index;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheTreeTest {
+    @Test
+    public void invalidateDropsOnlyAncestors() {
+        CacheTree t = new CacheTree();
+        t.put("", TestRepos.id(0), 4);
+        t.put("a", TestRepos.id(1), 3);
+        t.put("a/b", TestRepos.id(2), 1);
+        t.put("a/x", TestRepos.id(3), 1);
+        t.put("b", TestRepos.id(4), 1);
+        assertEquals(TestRepos.id(1), t.get("a", 3));
+        assertNull(t.get("a", 2));
+
+        t.invalidate("a/b/c.txt");
+        assertNull(t.get("", 4));
+        assertNull(t.get("a", 3));
+        assertNull(t.get("a/b", 1));
+        assertEquals(TestRepos.id(3), t.get("a/x", 1));
+        assertEquals(TestRepos.id(4), t.get("b", 1));
+        assertEquals(2, t.size());
+    }
+
+    @Test
+    public void cacheSurvivesSaveAndAddDropsChangedDirs() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        Path root = repo.getWorkTree();
+        Files.createDirectories(root.resolve("a"));
+        Files.createDirectories(root.resolve("b"));
+        Files.writeString(root.resolve("a/1.txt"), "a\n");
+        Files.writeString(root.resolve("b/1.txt"), "b\n");
+        ObjectStore store = new ObjectStore(repo);
+        Index index = new Index(repo, store);
+        index.addPaths(List.of(Path.of("a"), Path.of("b")), List.of());
+        CacheTree cache = index.cacheTree();
+        cache.put("", TestRepos.id(0), 2);
+        cache.put("a", TestRepos.id(1), 1);
+        cache.put("b", TestRepos.id(2), 1);
+        assertTrue(cache.isChanged());
+        index.save();
+        assertFalse(cache.isChanged());
+
+        Index read = new Index(repo, store);
+        assertEquals(TestRepos.id(0), read.cacheTree().get("", 2));
+        assertEquals(TestRepos.id(2), read.cacheTree().get("b", 1));
+
+        read.addPaths(List.of(Path.of("b/1.txt")), List.of());
+        assertEquals(TestRepos.id(2), new Index(repo, store).cacheTree().get("b", 1));
+
+        Files.writeString(root.resolve("a/1.txt"), "changed\n");
+        read.addPaths(List.of(Path.of("a/1.txt")), List.of());
+        CacheTree after = new Index(repo, store).cacheTree();
+        assertNull(after.get("", 2));
+        assertNull(after.get("a", 1));
+        assertEquals(TestRepos.id(2), after.get("b", 1));
+
+        Files.writeString(root.resolve("b/2.txt"), "new\n");
+        read.addPaths(List.of(Path.of("b")), List.of());
+        assertEquals(0, new Index(repo, store).cacheTree().size());
+    }
+}
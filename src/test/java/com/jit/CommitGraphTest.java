@@ -0,0 +1,52 @@
+package com.jit;
+
+import com.jit.objects.Commit;
+import com.jit.objects.CommitGraph;
+import com.jit.objects.ObjectId;
+import com.jit.repo.LockFile;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommitGraphTest {
+    private static Commit commit(ObjectId parent, int i) {
+        return new Commit(TestRepos.id(1000 + i), parent, "User", "user@example.com", Commit.nowIso(), "c" + i);
+    }
+
+    @Test
+    public void concurrentAppendsKeepEveryCommit() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectId root = TestRepos.id(0);
+        assertTrue(CommitGraph.append(repo, root, commit(null, 0)));
+        int n = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 1; i <= n; i++) {
+                int k = i;
+                results.add(pool.submit(() -> CommitGraph.append(repo, TestRepos.id(k), commit(root, k))));
+            }
+            for (Future<Boolean> f : results)
+                assertTrue(f.get());
+        } finally {
+            pool.shutdown();
+        }
+        CommitGraph graph = CommitGraph.open(repo);
+        assertEquals(n + 1, graph.size());
+        for (int i = 1; i <= n; i++) {
+            int pos = graph.find(TestRepos.id(i));
+            assertTrue(pos > 0);
+            assertEquals(0, graph.parentAt(pos));
+            assertEquals(2, graph.generationAt(pos));
+        }
+        assertFalse(Files.exists(LockFile.lockPath(repo.commitGraphFile())));
+    }
+}
@@ -0,0 +1,98 @@
+package com.jit;
+
+import com.jit.index.Index;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexTest {
+    private static Index.Entry entry(String path, int i) {
+        return new Index.Entry(path, TestRepos.id(i), 0100644, 1000L + i, 10L * i);
+    }
+
+    @Test
+    public void binaryIndexRoundTrip() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        String[] paths = { "b.txt", "a/z.txt", "a.txt", "a/b/c.txt", "ä.txt", "z" };
+        List<Index.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < paths.length; i++)
+            entries.add(entry(paths[i], i));
+        Index index = new Index(repo, store);
+        for (Index.Entry e : entries)
+            index.put(e);
+        index.save();
+
+        byte[] raw = Files.readAllBytes(repo.indexFile());
+        ByteBuffer buf = ByteBuffer.wrap(raw);
+        assertEquals("JIDX", new String(raw, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals(2, buf.getInt(4));
+        assertEquals(paths.length, buf.getInt(8));
+        byte[] sum = MessageDigest.getInstance("SHA-1").digest(Arrays.copyOf(raw, raw.length - 20));
+        assertArrayEquals(sum, Arrays.copyOfRange(raw, raw.length - 20, raw.length));
+        assertArrayEquals(sum, index.checksum());
+        assertEquals("a.txt", new String(raw, 12 + 42, buf.getShort(12 + 40), StandardCharsets.UTF_8));
+
+        Index read = new Index(repo, store);
+        assertEquals(paths.length, read.size());
+        assertArrayEquals(sum, read.checksum());
+        for (Index.Entry e : entries) {
+            Index.Entry got = read.get(e.path);
+            assertNotNull(got, e.path);
+            assertEquals(e.id, got.id);
+            assertEquals(e.mode, got.mode);
+            assertEquals(e.mtime, got.mtime);
+            assertEquals(e.size, got.size);
+        }
+        assertNull(read.get("a"));
+        assertNull(read.get("a/b"));
+        assertEquals(paths.length, read.entries().size());
+    }
+
+    @Test
+    public void corruptIndexIsRejected() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        Index index = new Index(repo, store);
+        index.put(entry("a.txt", 0));
+        index.save();
+        byte[] raw = Files.readAllBytes(repo.indexFile());
+
+        byte[] flipped = raw.clone();
+        flipped[20] ^= 1;
+        Files.write(repo.indexFile(), flipped);
+        assertThrows(RuntimeException.class, () -> new Index(repo, store));
+
+        Files.write(repo.indexFile(), Arrays.copyOf(raw, raw.length - 1));
+        assertThrows(RuntimeException.class, () -> new Index(repo, store));
+
+        byte[] future = raw.clone();
+        future[7] = 9;
+        Files.write(repo.indexFile(), future);
+        assertThrows(RuntimeException.class, () -> new Index(repo, store));
+    }
+
+    @Test
+    public void textIndexIsUpgradedOnWrite() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        ObjectId blob = TestRepos.id(6);
+        Files.writeString(repo.indexFile(), "a.txt\t" + blob.name() + "\t33188\t5\t6\n");
+        Index index = new Index(repo, store);
+        assertEquals(blob, index.get("a.txt").id);
+        index.save();
+        assertEquals("JIDX", new String(Files.readAllBytes(repo.indexFile()), 0, 4, StandardCharsets.US_ASCII));
+        assertEquals(6, new Index(repo, store).get("a.txt").size);
+    }
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,6 +26,10 @@ public class JitSmokeTest {
     }
 
     private ExecResult run(Path dir, String... args) throws IOException, InterruptedException {
+        return runWithInput(dir, "", args);
+    }
+
+    private ExecResult runWithInput(Path dir, String input, String... args) throws IOException, InterruptedException {
         String[] full = new String[args.length + 4];
         full[0] = "java";
         full[1] = "-cp";
@@ -32,6 +37,8 @@ public class JitSmokeTest {
         full[3] = "com.jit.cli.Jit";
         System.arraycopy(args, 0, full, 4, args.length);
         Process p = new ProcessBuilder(full).directory(dir.toFile()).start();
+        p.getOutputStream().write(input.getBytes(StandardCharsets.UTF_8));
+        p.getOutputStream().close();
         String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
         String err = new String(p.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
         int code = p.waitFor();
@@ -88,6 +95,11 @@ public class JitSmokeTest {
         assertEquals(0, ls.code);
         assertTrue(ls.out.contains("a.txt"));
 
+        r = run(temp, "gc");
+        assertEquals(0, r.code);
+        assertTrue(Files.notExists(temp.resolve(".jit/objects/" + treeHash.substring(0, 2))));
+        assertEquals(commitPayload, run(temp, "cat-file", head).out);
+
         r = run(temp, "checkout", head);
         assertEquals(0, r.code);
         assertEquals(head, Files.readString(temp.resolve(".jit/HEAD")).trim());
@@ -98,4 +110,112 @@ public class JitSmokeTest {
         assertEquals(0, r.code);
         assertEquals("ref: refs/heads/feature", Files.readString(temp.resolve(".jit/HEAD")).trim());
     }
+
+    @Test
+    public void checkoutAfterSwitchUsesIndex() throws Exception {
+        Path temp = Files.createTempDirectory("jit-checkout");
+        assertEquals(0, run(temp, "init").code);
+        Files.writeString(temp.resolve("a.txt"), "a\n");
+        assertEquals(0, run(temp, "add", "a.txt").code);
+        assertEquals(0, run(temp, "commit", "-m", "a").code);
+        String base = Files.readString(temp.resolve(".jit/refs/heads/main")).trim();
+        assertEquals(0, run(temp, "branch", "feature").code);
+        assertEquals(0, run(temp, "switch", "feature").code);
+        Files.writeString(temp.resolve("b.txt"), "b\n");
+        assertEquals(0, run(temp, "add", "b.txt").code);
+        assertEquals(0, run(temp, "commit", "-m", "b").code);
+
+        assertEquals(0, run(temp, "checkout", base).code);
+        assertTrue(Files.notExists(temp.resolve("b.txt")));
+        assertEquals(0, run(temp, "switch", "feature").code);
+        assertEquals(0, run(temp, "checkout", "feature").code);
+        assertEquals("b\n", Files.readString(temp.resolve("b.txt")));
+
+        assertEquals(0, run(temp, "checkout", base).code);
+        assertEquals(0, run(temp, "switch", "feature").code);
+        Files.writeString(temp.resolve("b.txt"), "mine\n");
+        assertEquals(0, run(temp, "checkout", "main").code);
+        assertEquals("mine\n", Files.readString(temp.resolve("b.txt")));
+    }
+
+    @Test
+    public void fsmonitorStatusTracksEditsAndIgnoreChanges() throws Exception {
+        Path temp = Files.createTempDirectory("jit-fsmonitor");
+        assertEquals(0, run(temp, "init").code);
+        Files.writeString(temp.resolve("a.txt"), "a\n");
+        Files.writeString(temp.resolve(".jitignore"), "build.log\n");
+        Files.writeString(temp.resolve("build.log"), "log\n");
+        assertEquals(0, run(temp, "add", "a.txt").code);
+        assertEquals(0, run(temp, "commit", "-m", "a").code);
+        assertEquals(0, run(temp, "fsmonitor", "start").code);
+        try {
+            ExecResult r = run(temp, "status");
+            assertEquals(0, r.code);
+            assertFalse(r.out.contains("build.log"));
+            assertTrue(Files.exists(temp.resolve(".jit/fsmonitor/snapshot")));
+
+            Files.writeString(temp.resolve("c.txt"), "c\n");
+            r = run(temp, "status");
+            assertTrue(r.out.contains("c.txt"));
+
+            Files.writeString(temp.resolve(".jitignore"), "");
+            r = run(temp, "status");
+            assertTrue(r.out.contains("build.log"));
+        } finally {
+            run(temp, "fsmonitor", "stop");
+        }
+    }
+
+    @Test
+    public void untrackedCacheSurvivesIndexWrites() throws Exception {
+        Path temp = Files.createTempDirectory("jit-untracked");
+        assertEquals(0, run(temp, "init").code);
+        Files.createDirectories(temp.resolve("d"));
+        Files.writeString(temp.resolve("d/a.txt"), "a\n");
+        Files.writeString(temp.resolve("d/u.txt"), "u\n");
+        Files.setLastModifiedTime(temp.resolve("d"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(temp, FileTime.fromMillis(1000));
+        assertTrue(run(temp, "status").out.contains("d/a.txt"));
+        assertEquals(0, run(temp, "add", "d/a.txt").code);
+        String untracked = Files.readString(temp.resolve(".jit/untracked"));
+        ExecResult r = run(temp, "status");
+        assertTrue(r.out.contains("Untracked files:\n  d/u.txt\n"));
+        assertFalse(r.out.substring(r.out.indexOf("Untracked files:")).contains("d/a.txt"));
+        assertEquals(untracked, Files.readString(temp.resolve(".jit/untracked")));
+    }
+
+    @Test
+    public void updateRefStdinIsAllOrNothing() throws Exception {
+        Path temp = Files.createTempDirectory("jit-update-ref");
+        assertEquals(0, run(temp, "init").code);
+        Files.writeString(temp.resolve("a.txt"), "a\n");
+        assertEquals(0, run(temp, "add", "a.txt").code);
+        assertEquals(0, run(temp, "commit", "-m", "a").code);
+        String c1 = Files.readString(temp.resolve(".jit/refs/heads/main")).trim();
+        Files.writeString(temp.resolve("a.txt"), "b\n");
+        assertEquals(0, run(temp, "add", "a.txt").code);
+        assertEquals(0, run(temp, "commit", "-m", "b").code);
+        String c2 = Files.readString(temp.resolve(".jit/refs/heads/main")).trim();
+        assertEquals(0, run(temp, "branch", "x").code);
+
+        ExecResult r = runWithInput(temp, "update refs/heads/x " + c1 + " " + c2 + "\ncreate refs/heads/y " + c1
+                + "\nverify refs/heads/main " + c1 + "\n", "update-ref", "--stdin");
+        assertNotEquals(0, r.code);
+        assertEquals(c2, Files.readString(temp.resolve(".jit/refs/heads/x")).trim());
+        assertTrue(Files.notExists(temp.resolve(".jit/refs/heads/y")));
+        assertTrue(Files.notExists(temp.resolve(".jit/packed-refs")));
+
+        r = runWithInput(temp, "update refs/heads/x " + c1 + " " + c2 + "\ncreate refs/heads/y " + c1
+                + "\nverify refs/heads/main " + c2 + "\n", "update-ref", "--stdin");
+        assertEquals(0, r.code, r.err);
+        assertTrue(Files.notExists(temp.resolve(".jit/refs/heads/x")));
+        assertTrue(Files.notExists(temp.resolve(".jit/refs/heads/x.lock")));
+        String packed = Files.readString(temp.resolve(".jit/packed-refs"));
+        assertTrue(packed.contains(c1 + " refs/heads/x\n"));
+        assertTrue(packed.contains(c1 + " refs/heads/y\n"));
+
+        assertNotEquals(0, run(temp, "update-ref", "refs/heads/y", c2, c2).code);
+        assertEquals(0, run(temp, "update-ref", "-d", "refs/heads/y", c1).code);
+        assertFalse(Files.readString(temp.resolve(".jit/packed-refs")).contains("refs/heads/y"));
+    }
 }
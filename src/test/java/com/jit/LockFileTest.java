@@ -0,0 +1,115 @@
+package com.jit;
+
+import com.jit.objects.ObjectId;
+import com.jit.repo.LockFile;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockFileTest {
+    @Test
+    public void lockIsExclusiveUntilCommitOrClose() throws Exception {
+        Path target = TestRepos.newRepo().getJitDir().resolve("counter");
+        Files.writeString(target, "0");
+        try (LockFile held = LockFile.acquire(target)) {
+            assertTrue(Files.exists(LockFile.lockPath(target)));
+            assertNull(LockFile.tryAcquire(target));
+            held.write("1".getBytes(StandardCharsets.UTF_8));
+            assertEquals("0", Files.readString(target));
+            held.commit();
+        }
+        assertEquals("1", Files.readString(target));
+        assertTrue(Files.notExists(LockFile.lockPath(target)));
+
+        try (LockFile abandoned = LockFile.acquire(target)) {
+            abandoned.write("2".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("1", Files.readString(target));
+        assertTrue(Files.notExists(LockFile.lockPath(target)));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    try (LockFile l = LockFile.acquire(target)) {
+                        int v = Integer.parseInt(Files.readString(target));
+                        l.write(Integer.toString(v + 1).getBytes(StandardCharsets.UTF_8));
+                        l.commit();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads)
+            t.join();
+        assertEquals("201", Files.readString(target));
+    }
+
+    @Test
+    public void staleLockTimesOutAndNamesTheLock() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        Path target = repo.getJitDir().resolve("refs/heads/main");
+        Files.writeString(LockFile.lockPath(target), "");
+        long start = System.currentTimeMillis();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> LockFile.acquire(target, 200));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertTrue(e.getMessage().contains("main.lock"), e.getMessage());
+        assertTrue(Files.exists(LockFile.lockPath(target)));
+
+        Files.delete(LockFile.lockPath(target));
+        new RefStore(repo).writeRef("refs/heads/main", TestRepos.id(1), "test");
+        assertEquals(TestRepos.id(1), new RefStore(repo).resolveRef("refs/heads/main"));
+    }
+
+    @Test
+    public void compareAndSetRejectsStaleExpectation() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        RefStore refs = new RefStore(repo);
+        String ref = "refs/heads/topic";
+        assertTrue(refs.createRef(ref, TestRepos.id(1), "test"));
+        assertFalse(refs.createRef(ref, TestRepos.id(2), "test"));
+        assertFalse(refs.compareAndSet(ref, TestRepos.id(2), TestRepos.id(3), "test"));
+        assertFalse(refs.compareAndSet(ref, null, TestRepos.id(3), "test"));
+        assertEquals(TestRepos.id(1), refs.resolveRef(ref));
+        assertTrue(refs.compareAndSet(ref, TestRepos.id(1), TestRepos.id(2), "test"));
+        assertEquals(TestRepos.id(2), new RefStore(repo).resolveRef(ref));
+        assertTrue(Files.notExists(LockFile.lockPath(repo.getJitDir().resolve(ref))));
+
+        refs.setHeadDetached(TestRepos.id(5), "test");
+        assertFalse(refs.compareAndSetHead(TestRepos.id(4), TestRepos.id(6), "test"));
+        assertTrue(refs.compareAndSetHead(TestRepos.id(5), TestRepos.id(6), "test"));
+        assertEquals(TestRepos.id(6).name(), refs.readHead());
+
+        String counter = "refs/heads/counter";
+        refs.writeRef(counter, TestRepos.id(0), "test");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                RefStore mine = new RefStore(repo);
+                for (int i = 0; i < 20; i++) {
+                    while (true) {
+                        ObjectId cur = mine.resolveRef(counter);
+                        ObjectId next = ObjectId.fromHex(String.format("%040x", Long.parseLong(cur.name(), 16) + 1));
+                        if (mine.compareAndSet(counter, cur, next, "test"))
+                            break;
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads)
+            t.join();
+        assertEquals(TestRepos.id(160), refs.resolveRef(counter));
+    }
+}
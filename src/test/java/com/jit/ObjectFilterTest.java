@@ -0,0 +1,77 @@
+package com.jit;
+
+import com.jit.objects.BloomFilter;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectFilterTest {
+    private static byte[] blob(int i) {
+        return ("blob " + i + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void filterHasNoFalseNegatives() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            ids.add(store.writeObject("blob", blob(i)));
+        BloomFilter f = store.writeFilter();
+        for (ObjectId id : ids)
+            assertTrue(f.mightContain(id));
+        assertTrue(f.expectedFpp() < 0.01);
+        assertTrue(f.memoryBytes() > 0);
+
+        BloomFilter read = BloomFilter.read(repo.objectFilterFile());
+        assertNotNull(read);
+        assertEquals(f.count(), read.count());
+        for (ObjectId id : ids)
+            assertTrue(read.mightContain(id));
+
+        ObjectStore next = new ObjectStore(repo);
+        ObjectId added = next.writeObject("blob", blob(-1));
+        next.saveFilter();
+        assertTrue(BloomFilter.read(repo.objectFilterFile()).mightContain(added));
+        assertEquals(1, next.filterSkips());
+    }
+
+    @Test
+    public void falsePositiveStillWritesObject() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        BloomFilter saturated = new BloomFilter(1, 0.5);
+        for (int i = 0; i < 1000; i++)
+            saturated.add(ObjectId.fromHex(String.format("%040x", i)));
+        Files.createDirectories(repo.objectFilterFile().getParent());
+        Files.write(repo.objectFilterFile(), saturated.encode());
+
+        ObjectStore store = new ObjectStore(repo);
+        ObjectId id = store.writeObject("blob", blob(1));
+        assertEquals(1, store.filterFalsePositives());
+        assertEquals(0, store.filterSkips());
+        assertArrayEquals(blob(1), new ObjectStore(repo).readObject(id).payload);
+    }
+
+    @Test
+    public void staleFilterOnlyCausesRewrite() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        store.writeFilter();
+        ObjectId id = new ObjectStore(repo).writeObject("blob", blob(2));
+        assertFalse(BloomFilter.read(repo.objectFilterFile()).mightContain(id));
+
+        ObjectStore stale = new ObjectStore(repo);
+        assertEquals(id, stale.writeObject("blob", blob(2)));
+        assertEquals(1, stale.filterSkips());
+        assertArrayEquals(blob(2), stale.readObject(id).payload);
+        assertTrue(stale.contains(id));
+    }
+}
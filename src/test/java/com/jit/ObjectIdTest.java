@@ -0,0 +1,82 @@
+package com.jit;
+
+import com.jit.objects.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectIdTest {
+    @Test
+    public void rawAndHexRoundTrip() {
+        Random rnd = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            byte[] raw = new byte[20];
+            rnd.nextBytes(raw);
+            ObjectId id = ObjectId.fromRaw(raw);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : raw)
+                hex.append(String.format("%02x", b & 0xff));
+            assertEquals(hex.toString(), id.name());
+            assertEquals(id, ObjectId.fromHex(hex.toString()));
+            assertEquals(id, ObjectId.fromHex(hex.toString().toUpperCase()));
+            assertArrayEquals(raw, id.toRaw());
+            assertEquals(raw[0] & 0xff, id.firstByte());
+
+            byte[] padded = new byte[25];
+            id.copyRawTo(padded, 3);
+            assertEquals(id, ObjectId.fromRaw(padded, 3));
+            ByteBuffer buf = ByteBuffer.allocate(24);
+            buf.putInt(7);
+            id.copyRawTo(buf);
+            assertEquals(id, ObjectId.fromRaw(buf, 4));
+            assertEquals(id.hashCode(), ObjectId.fromRaw(raw.clone()).hashCode());
+        }
+    }
+
+    @Test
+    public void invalidHexIsRejected() {
+        assertFalse(ObjectId.isHex(null));
+        assertFalse(ObjectId.isHex("ab"));
+        assertFalse(ObjectId.isHex("g".repeat(40)));
+        assertFalse(ObjectId.isHex("a".repeat(41)));
+        assertTrue(ObjectId.isHex("0123456789abcdefABCDEF0123456789abcdef01"));
+        assertThrows(RuntimeException.class, () -> ObjectId.fromHex("a".repeat(39)));
+        assertThrows(RuntimeException.class, () -> ObjectId.fromHex("z" + "a".repeat(39)));
+        assertThrows(RuntimeException.class, () -> ObjectId.fromHex("é" + "a".repeat(39)));
+        assertThrows(RuntimeException.class, () -> ObjectId.fromRaw(new byte[19]));
+    }
+
+    @Test
+    public void orderingMatchesUnsignedBytesAndHex() {
+        Random rnd = new Random(7);
+        List<byte[]> raws = new ArrayList<>();
+        for (int n = 0; n < 200; n++) {
+            byte[] raw = new byte[20];
+            rnd.nextBytes(raw);
+            raws.add(raw);
+        }
+        byte[] high = new byte[20];
+        Arrays.fill(high, (byte) 0xff);
+        raws.add(high);
+        raws.add(new byte[20]);
+        byte[] last = new byte[20];
+        last[19] = (byte) 0x80;
+        raws.add(last);
+        for (byte[] a : raws) {
+            for (byte[] b : raws) {
+                ObjectId x = ObjectId.fromRaw(a);
+                ObjectId y = ObjectId.fromRaw(b);
+                int expected = Integer.signum(Arrays.compareUnsigned(a, b));
+                assertEquals(expected, Integer.signum(x.compareTo(y)));
+                assertEquals(expected, Integer.signum(x.name().compareTo(y.name())));
+                assertEquals(expected == 0, x.equals(y));
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.jit;
+
+import com.jit.objects.Delta;
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.objects.PackFile;
+import com.jit.objects.Repacker;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackTest {
+    private static byte[] text(int lines, String marker) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+            sb.append("line ").append(i).append(i == lines / 2 ? marker : "").append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void deltaRoundTrip() {
+        byte[] base = text(500, "");
+        byte[] target = text(500, " changed");
+        byte[] delta = Delta.create(base, target);
+        assertTrue(delta.length < target.length / 10);
+        assertArrayEquals(target, Delta.apply(base, delta));
+
+        byte[] unrelated = "nothing in common".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(unrelated, Delta.apply(base, Delta.create(base, unrelated)));
+        assertArrayEquals(new byte[0], Delta.apply(base, Delta.create(base, new byte[0])));
+        assertArrayEquals(base, Delta.apply(new byte[0], Delta.create(new byte[0], base)));
+    }
+
+    @Test
+    public void packIndexFindsEveryObject() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        List<ObjectId> ids = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            byte[] data = text(200, " v" + i);
+            payloads.add(data);
+            ids.add(store.writeObject("blob", data));
+        }
+        Repacker.Result r = new Repacker(repo, store).repack(List.of());
+        assertEquals(300, r.objects);
+        assertTrue(store.looseObjects().isEmpty());
+
+        store.reloadPacks();
+        assertEquals(1, store.packs().size());
+        PackFile pack = store.packs().get(0);
+        assertEquals(300, pack.count());
+        for (int i = 1; i < pack.count(); i++)
+            assertTrue(pack.idAt(i - 1).compareTo(pack.idAt(i)) < 0);
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue(pack.contains(ids.get(i)));
+            assertArrayEquals(payloads.get(i), store.readObject(ids.get(i)).payload);
+            assertEquals(payloads.get(i).length, store.readInfo(ids.get(i)).size);
+        }
+        assertFalse(pack.contains(ObjectId.fromHex("00".repeat(20))));
+        assertFalse(pack.contains(ObjectId.fromHex("ff".repeat(20))));
+
+        ObjectStore fresh = new ObjectStore(repo);
+        for (int i = 0; i < ids.size(); i += 37)
+            assertArrayEquals(payloads.get(i), fresh.readObject(ids.get(i)).payload);
+    }
+
+    @Test
+    public void missingAndCorruptObjectsFail() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        ObjectId id = store.writeObject("blob", text(100, ""));
+        ObjectId missing = ObjectId.fromHex("ab".repeat(20));
+        assertThrows(RuntimeException.class, () -> store.readObject(missing));
+        assertThrows(RuntimeException.class, () -> store.readInfo(missing));
+        assertFalse(store.contains(missing));
+
+        new Repacker(repo, store).repack(List.of());
+        store.reloadPacks();
+        assertTrue(store.contains(id));
+        Path pack = store.packs().get(0).path();
+        try (FileChannel ch = FileChannel.open(pack, StandardOpenOption.WRITE)) {
+            ch.truncate(16);
+        }
+        assertThrows(RuntimeException.class, () -> new ObjectStore(repo).readObject(id));
+    }
+
+    @Test
+    public void missesKeepLoadedPacksAndCorruptIndexesFail() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        ObjectStore store = new ObjectStore(repo);
+        ObjectId first = store.writeObject("blob", text(100, " first"));
+        new Repacker(repo, store).repack(List.of());
+        PackFile loaded = store.packs().get(0);
+        ObjectId missing = ObjectId.fromHex("ab".repeat(20));
+        for (int i = 0; i < 3; i++)
+            assertThrows(RuntimeException.class, () -> store.readInfo(missing));
+        assertSame(loaded, store.packs().get(0));
+
+        ObjectId second = store.writeObject("blob", text(100, " second"));
+        new Repacker(repo, store).repack(List.of());
+        assertEquals(1, store.packs().size());
+        assertNotSame(loaded, store.packs().get(0));
+        assertThrows(RuntimeException.class, () -> loaded.read(first));
+        assertArrayEquals(text(100, " second"), store.readObject(second).payload);
+
+        Path idx = store.packs().get(0).indexPath();
+        byte[] bytes = Files.readAllBytes(idx);
+        bytes[bytes.length - 41] ^= 1;
+        Files.write(idx, bytes);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new ObjectStore(repo).packs());
+        assertEquals("corrupt pack index: " + idx.getFileName(), e.getMessage());
+    }
+}
@@ -0,0 +1,57 @@
+package com.jit;
+
+import com.jit.objects.ObjectId;
+import com.jit.repo.PackedRefs;
+import com.jit.repo.RefStore;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedRefsTest {
+    @Test
+    public void binarySearchFindsEveryRef() {
+        Map<String, ObjectId> refs = new LinkedHashMap<>();
+        String[] names = { "refs/heads/main", "refs/heads/a", "refs/heads/a/b", "refs/heads/a-b", "refs/heads/ä",
+                "refs/tags/v1", "refs/heads/zz" };
+        for (int i = 0; i < names.length; i++)
+            refs.put(names[i], TestRepos.id(i));
+        for (int i = 0; i < 500; i++)
+            refs.put("refs/heads/topic/" + i, TestRepos.id(100 + i));
+        PackedRefs packed = PackedRefs.parse(PackedRefs.format(refs));
+        for (Map.Entry<String, ObjectId> e : refs.entrySet())
+            assertEquals(e.getValue(), packed.find(e.getKey()));
+        assertNull(packed.find("refs/heads/"));
+        assertNull(packed.find("refs/heads/topic/5000"));
+        assertNull(packed.find("refs/heads/a/"));
+        assertEquals(501, packed.refs("refs/heads/topic/").size() + packed.refs("refs/heads/a/").size());
+        assertThrows(RuntimeException.class, () -> PackedRefs.parse("bogus\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void packRefsMovesLooseRefsAndLooseWins() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        RefStore refs = new RefStore(repo);
+        for (int i = 0; i < 20; i++)
+            refs.writeRef("refs/heads/b" + i, TestRepos.id(i), "test");
+        refs.writeRef("refs/heads/dir/x", TestRepos.id(99), "test");
+        assertEquals(21, refs.packRefs());
+        assertTrue(Files.notExists(repo.refsHeadsDir().resolve("b0")));
+        assertTrue(Files.notExists(repo.refsHeadsDir().resolve("dir")));
+        assertEquals(TestRepos.id(7), refs.resolveRef("refs/heads/b7"));
+        assertEquals(TestRepos.id(99), refs.resolveRef("refs/heads/dir/x"));
+        assertEquals(21, refs.listRefs().size());
+
+        refs.writeRef("refs/heads/b7", TestRepos.id(50), "test");
+        assertEquals(TestRepos.id(50), new RefStore(repo).resolveRef("refs/heads/b7"));
+        assertEquals(TestRepos.id(50), refs.listRefs().get("refs/heads/b7"));
+        assertEquals(1, refs.packRefs());
+        assertEquals(TestRepos.id(50), refs.resolveRef("refs/heads/b7"));
+        assertNull(refs.resolveRef("refs/heads/missing"));
+    }
+}
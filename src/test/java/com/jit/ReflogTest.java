@@ -0,0 +1,74 @@
+package com.jit;
+
+import com.jit.repo.RefStore;
+import com.jit.repo.Reflog;
+import com.jit.repo.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReflogTest {
+    @Test
+    public void readsNewestFirst() throws Exception {
+        Reflog log = new Reflog(TestRepos.newRepo());
+        assertTrue(log.read("refs/heads/x", 10).isEmpty());
+        log.append("refs/heads/x", null, TestRepos.id(0), "create");
+        for (int i = 1; i < 100; i++)
+            log.append("refs/heads/x", TestRepos.id(i - 1), TestRepos.id(i), "step " + i);
+        log.append("refs/heads/x", TestRepos.id(99), TestRepos.id(100), "two\nlines");
+
+        List<Reflog.Entry> last = log.read("refs/heads/x", 3);
+        assertEquals(3, last.size());
+        assertEquals("two lines", last.get(0).reason);
+        assertEquals(TestRepos.id(100), last.get(0).id);
+        assertEquals(TestRepos.id(99), last.get(0).old);
+        assertEquals("step 98", last.get(2).reason);
+
+        List<Reflog.Entry> all = log.read("refs/heads/x", Integer.MAX_VALUE);
+        assertEquals(101, all.size());
+        assertNull(all.get(100).old);
+        assertEquals("create", all.get(100).reason);
+
+        log.delete("refs/heads/x");
+        assertTrue(log.read("refs/heads/x", 10).isEmpty());
+    }
+
+    @Test
+    public void concurrentAppendsKeepWholeLines() throws Exception {
+        Reflog log = new Reflog(TestRepos.newRepo());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int n = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++)
+                    log.append("HEAD", TestRepos.id(n), TestRepos.id(i), "thread " + n + " entry " + i);
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads)
+            t.join();
+        List<Reflog.Entry> all = log.read("HEAD", Integer.MAX_VALUE);
+        assertEquals(1600, all.size());
+        for (Reflog.Entry e : all)
+            assertTrue(e.reason.matches("thread \\d entry \\d+"));
+    }
+
+    @Test
+    public void refUpdatesAreLogged() throws Exception {
+        Repository repo = TestRepos.newRepo();
+        RefStore refs = new RefStore(repo);
+        String branch = refs.headTargetRef();
+        refs.writeRef(branch, TestRepos.id(1), "first");
+        assertTrue(refs.compareAndSet(branch, TestRepos.id(1), TestRepos.id(2), "second"));
+        assertFalse(refs.compareAndSet(branch, TestRepos.id(1), TestRepos.id(3), "lost"));
+        Reflog log = new Reflog(repo);
+        List<Reflog.Entry> entries = log.read(branch, 10);
+        assertEquals(2, entries.size());
+        assertEquals("second", entries.get(0).reason);
+        assertEquals(TestRepos.id(1), entries.get(0).old);
+        assertEquals(2, log.read("HEAD", 10).size());
+    }
+}
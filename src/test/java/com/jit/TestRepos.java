@@ -0,0 +1,22 @@
+package com.jit;
+
+import com.jit.objects.ObjectId;
+import com.jit.repo.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+final class TestRepos {
+    private TestRepos() {
+    }
+
+    static Repository newRepo() throws IOException {
+        Repository repo = new Repository(Files.createTempDirectory("jit-test"));
+        repo.init();
+        return repo;
+    }
+
+    static ObjectId id(int i) {
+        return ObjectId.fromHex(String.format("%040x", i + 1));
+    }
+}
@@ -0,0 +1,125 @@
+package com.jit;
+
+import com.jit.objects.ObjectId;
+import com.jit.objects.ObjectStore;
+import com.jit.objects.Tree;
+import com.jit.objects.TreeCursor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TreeCursorTest {
+    private static byte[] entry(String mode, String name, ObjectId id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes((mode + " " + name + "\0").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(id.toRaw());
+        return out.toByteArray();
+    }
+
+    @Test
+    public void cursorWalksAndLooksUpStoredTree() throws Exception {
+        ObjectStore store = new ObjectStore(TestRepos.newRepo());
+        List<Tree.Entry> entries = new ArrayList<>();
+        String[] names = { "z.txt", "a", "a.txt", "b", "dir", "é.txt" };
+        for (int i = 0; i < names.length; i++)
+            entries.add(new Tree.Entry(names[i].equals("dir") ? 040000 : 0100644, names[i], TestRepos.id(i)));
+        ObjectId tree = Tree.store(store, entries);
+
+        TreeCursor c = store.openTree(tree);
+        List<String> seen = new ArrayList<>();
+        byte[] prev = null;
+        while (c.next()) {
+            byte[] name = Arrays.copyOfRange(c.buffer(), c.nameOffset(), c.nameOffset() + c.nameLength());
+            if (prev != null)
+                assertTrue(Arrays.compareUnsigned(prev, name) < 0);
+            prev = name;
+            seen.add(c.name());
+            int i = Arrays.asList(names).indexOf(c.name());
+            assertEquals(TestRepos.id(i), c.id());
+            assertEquals(c.name().equals("dir"), c.isTree());
+        }
+        assertEquals(names.length, seen.size());
+        assertFalse(c.next());
+
+        for (int i = 0; i < names.length; i++) {
+            assertTrue(c.lookup(names[i]), names[i]);
+            assertEquals(TestRepos.id(i), c.id());
+        }
+        assertFalse(c.lookup("dir/x"));
+        assertFalse(c.lookup(""));
+        assertFalse(c.lookup("zz"));
+        c.reset();
+        assertTrue(c.next());
+        assertEquals(seen.get(0), c.name());
+
+        TreeCursor other = store.openTree(tree);
+        assertTrue(other.lookup("b"));
+        assertTrue(c.lookup("b"));
+        assertEquals(0, c.compareName(other));
+        assertTrue(c.idEquals(other));
+        assertTrue(other.lookup("a"));
+        assertTrue(c.compareName(other) > 0);
+        assertFalse(c.idEquals(other));
+
+        assertEquals(seen, Tree.parse(store.readObject(tree).payload).stream().map(e -> e.name).toList());
+    }
+
+    @Test
+    public void nonBmpNamesSortByUtf8Bytes() throws Exception {
+        ObjectStore store = new ObjectStore(TestRepos.newRepo());
+        String[] names = { "a", "\uE000.txt", "\uD83D\uDE00.txt", "\uFFFD", "\uD800\uDC00" };
+        List<Tree.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < names.length; i++)
+            entries.add(new Tree.Entry(0100644, names[i], TestRepos.id(i)));
+        ObjectId tree = Tree.store(store, entries);
+
+        TreeCursor c = store.openTree(tree);
+        List<String> order = new ArrayList<>();
+        while (c.next())
+            order.add(c.name());
+        assertEquals(List.of("a", "\uE000.txt", "\uFFFD", "\uD800\uDC00", "\uD83D\uDE00.txt"), order);
+        for (int i = 0; i < names.length; i++) {
+            assertTrue(c.lookup(names[i]), names[i]);
+            assertEquals(TestRepos.id(i), c.id());
+        }
+    }
+
+    @Test
+    public void emptyAndSlicedTrees() {
+        TreeCursor empty = new TreeCursor(new byte[0]);
+        assertFalse(empty.next());
+        assertFalse(empty.lookup("a"));
+
+        byte[] one = entry("100644", "a", TestRepos.id(1));
+        byte[] padded = new byte[one.length + 10];
+        System.arraycopy(one, 0, padded, 5, one.length);
+        TreeCursor c = new TreeCursor(padded, 5, one.length);
+        assertTrue(c.next());
+        assertEquals("a", c.name());
+        assertEquals(0100644, c.mode());
+        assertEquals(TestRepos.id(1), c.id());
+        assertFalse(c.next());
+    }
+
+    @Test
+    public void corruptTreesAreRejected() {
+        byte[] good = entry("100644", "a", TestRepos.id(1));
+        List<byte[]> bad = List.of(
+                Arrays.copyOf(good, good.length - 1),
+                entry("100844", "a", TestRepos.id(1)),
+                Arrays.copyOf(good, 4),
+                Arrays.copyOf(good, 9),
+                "100644 a".getBytes(StandardCharsets.UTF_8));
+        for (byte[] b : bad) {
+            assertThrows(RuntimeException.class, () -> new TreeCursor(b).next());
+            assertThrows(RuntimeException.class, () -> new TreeCursor(b).lookup("a"));
+            assertThrows(RuntimeException.class, () -> Tree.parse(b));
+        }
+    }
+}